@@ -0,0 +1,49 @@
+package com.throttling.ratelimiter.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.util.RateLimitKeyUtil;
+
+//Key construction done for every applicable limit of a request
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitKeyBenchmark {
+
+    public String cachePrefix = "rate_limit:";
+
+    public String clientId = "client-42";
+
+    public String apiName = "/orders/items";
+
+    @Benchmark
+    public String buildRateLimitKey() {
+        return RateLimitKeyUtil.buildRateLimitKey(clientId, LimitType.API, apiName);
+    }
+
+    @Benchmark
+    public String buildCacheKey() {
+        return cachePrefix + RateLimitKeyUtil.buildRateLimitKey(clientId, LimitType.API, apiName);
+    }
+
+    //the constructor derives the id through generateId
+    @Benchmark
+    public ClientRateLimitData generateId() {
+        return new ClientRateLimitData(clientId, LimitType.API, apiName, com.throttling.ratelimiter.enums.TimeUnit.MIN, 100);
+    }
+}
@@ -0,0 +1,57 @@
+package com.throttling.ratelimiter.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.serializer.RateLimitDataRedisSerializer;
+
+//Value serialization of the cached limit configuration, the binary codec configured in RedisConfig against legacy JSON
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitSerializationBenchmark {
+
+    @Param({ "binary", "json" })
+    public String codec;
+
+    private RedisSerializer<Object> serializer;
+
+    private ClientRateLimitData rateLimit;
+
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() {
+        serializer = "binary".equals(codec) ? new RateLimitDataRedisSerializer() : new GenericJackson2JsonRedisSerializer();
+        rateLimit = new ClientRateLimitData("client-42", LimitType.API, "/orders/items", com.throttling.ratelimiter.enums.TimeUnit.MIN, 100);
+        serialized = serializer.serialize(rateLimit);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(rateLimit);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(serialized);
+    }
+}
@@ -0,0 +1,47 @@
+package com.throttling.ratelimiter.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.throttling.ratelimiter.pojo.model.BucketState;
+import com.throttling.ratelimiter.util.TimeUnitConversionUtil;
+import com.throttling.ratelimiter.util.TokenBucketRefillUtil;
+
+//Refill math used for every evaluated bucket
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeUnitConversionBenchmark {
+
+    @Param({ "SEC", "MIN", "MONTH" })
+    public com.throttling.ratelimiter.enums.TimeUnit timeUnit;
+
+    public long elapsedMillis = 1_234L;
+
+    public BucketState state = new BucketState(3, 0, 7);
+
+    public long maxPermits = 100;
+
+    @Benchmark
+    public long toMillis() {
+        return TimeUnitConversionUtil.toMillis(timeUnit);
+    }
+
+    @Benchmark
+    public BucketState refill() {
+        return TokenBucketRefillUtil.refill(state, maxPermits, TimeUnitConversionUtil.toMillis(timeUnit), elapsedMillis);
+    }
+}
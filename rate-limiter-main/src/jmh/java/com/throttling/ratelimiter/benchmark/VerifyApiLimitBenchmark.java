@@ -0,0 +1,140 @@
+package com.throttling.ratelimiter.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.throttling.ratelimiter.RateLimiterApplication;
+import com.throttling.ratelimiter.enums.ApiMethod;
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.pojo.request.ClientApiRequest;
+import com.throttling.ratelimiter.pojo.request.ClientConfigRequest;
+import com.throttling.ratelimiter.pojo.request.ClientIntervalRequestsLimit;
+import com.throttling.ratelimiter.pojo.request.ClientLimitsConfigRequest;
+import com.throttling.ratelimiter.pojo.response.BaseResponse;
+import com.throttling.ratelimiter.service.ClientConfigService;
+import com.throttling.ratelimiter.service.ClientRateLimitingService;
+
+import redis.embedded.RedisServer;
+
+//End to end ClientRateLimitingService.verifyApiLimit against an embedded Redis server.
+//clients=1 puts every thread on the same client (contended), clients=10000 spreads them (uncontended).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class VerifyApiLimitBenchmark {
+
+    // Large enough for the benchmark to measure the allowed path
+    private static final long MAX_REQUESTS = 1_000_000_000L;
+
+    private static final String API_NAME = "/orders";
+
+    @Param({ "redis-script", "redis-lock", "redis-lease", "local" })
+    public String engine;
+
+    @Param({ "1", "10000" })
+    public int clients;
+
+    private RedisServer redisServer;
+
+    private ConfigurableApplicationContext context;
+
+    private ClientRateLimitingService clientRateLimitingService;
+
+    private ClientApiRequest[] requests;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int port = freePort();
+        redisServer = RedisServer.builder().port(port).setting("save \"\"").build();
+        redisServer.start();
+
+        context = new SpringApplicationBuilder(RateLimiterApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                // Arguments rather than default properties, which application.properties would override
+                .run("--spring.redis.port=" + port,
+                        "--ratelimiter.engine=" + engine,
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.springframework.data.redis=WARN");
+        clientRateLimitingService = context.getBean(ClientRateLimitingService.class);
+        ClientConfigService clientConfigService = context.getBean(ClientConfigService.class);
+
+        requests = new ClientApiRequest[clients];
+        for (int i = 0; i < clients; i++) {
+            String clientId = "bench-client-" + i;
+            clientConfigService.addOrUpdateRateLimits(clientConfig(clientId));
+
+            ClientApiRequest request = new ClientApiRequest();
+            request.setClientId(clientId);
+            request.setMethodName(ApiMethod.GET);
+            request.setApiName(API_NAME);
+            requests[i] = request;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        redisServer.stop();
+    }
+
+    @Benchmark
+    public BaseResponse verifyApiLimit() {
+        ClientApiRequest request = clients == 1 ? requests[0] : requests[ThreadLocalRandom.current().nextInt(clients)];
+        return clientRateLimitingService.verifyApiLimit(request);
+    }
+
+    //DEFAULT, METHOD and API limits so every decision evaluates three buckets
+    private static ClientConfigRequest clientConfig(String clientId) {
+        ClientConfigRequest config = new ClientConfigRequest();
+        config.setClientId(clientId);
+        config.setLimits(Arrays.asList(
+                limit(LimitType.DEFAULT, "GLOBAL"),
+                limit(LimitType.METHOD, ApiMethod.GET.name()),
+                limit(LimitType.API, API_NAME)));
+        return config;
+    }
+
+    private static ClientLimitsConfigRequest limit(LimitType limitType, String limitName) {
+        ClientIntervalRequestsLimit interval = new ClientIntervalRequestsLimit();
+        interval.setTimeUnit(com.throttling.ratelimiter.enums.TimeUnit.SEC);
+        interval.setMaxRequests(MAX_REQUESTS);
+
+        ClientLimitsConfigRequest limit = new ClientLimitsConfigRequest();
+        limit.setLimitType(limitType);
+        limit.setLimitName(limitName);
+        limit.setTimeIntervalLimit(interval);
+        return limit;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
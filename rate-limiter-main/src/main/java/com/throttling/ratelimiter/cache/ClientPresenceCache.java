@@ -0,0 +1,183 @@
+package com.throttling.ratelimiter.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.throttling.ratelimiter.metrics.RateLimiterMetrics;
+import com.throttling.ratelimiter.repository.RateLimitConfigScanRepository;
+
+//Answers "is this client configured" without a Redis round trip where it can. A Bloom filter of every client id,
+//built in the background from the ClientData keyspace set, rejects unknown clients; the result of each lookup that
+//got past the filter is then cached, present clients for the TTL and absent ones for a shorter negative TTL. Clients
+//added or removed on any node reach the filter and the caches through RateLimitConfigNearCache's invalidations, and the
+//filter is rebuilt periodically and after a resubscription to drop removed clients and recover lost messages.
+@Component
+public class ClientPresenceCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientPresenceCache.class);
+
+    @Autowired
+    private RateLimitConfigScanRepository rateLimitConfigScanRepository;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private RateLimiterMetrics rateLimiterMetrics;
+
+    @Value("${ratelimiter.client-presence.enabled:true}")
+    private boolean isEnabled;
+
+    @Value("${ratelimiter.client-presence.expected-clients:1000000}")
+    private long expectedClients;
+
+    @Value("${ratelimiter.client-presence.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${ratelimiter.client-presence.scan-batch-size:1000}")
+    private int scanBatchSize;
+
+    @Value("${ratelimiter.client-presence.max-size:100000}")
+    private long maxSize;
+
+    @Value("${ratelimiter.client-presence.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${ratelimiter.client-presence.negative-ttl-seconds:5}")
+    private long negativeTtlSeconds;
+
+    @Value("${ratelimiter.config.invalidation.channel:rate_limit:config_invalidation}")
+    private String invalidationChannel;
+
+    private Cache<String, Boolean> presentClients;
+
+    private Cache<String, Boolean> absentClients;
+
+    // Null until the first build completes, every client passes the filter until then
+    private volatile ClientBloomFilter filter;
+
+    // Filter being built, also receives the clients added while the scan runs
+    private volatile ClientBloomFilter nextFilter;
+
+    private final AtomicBoolean isRebuilding = new AtomicBoolean();
+
+    @PostConstruct
+    public void init() {
+        presentClients = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        absentClients = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(negativeTtlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        rateLimiterMetrics.monitorCache(presentClients, "ratelimiter.client-presence.present");
+        rateLimiterMetrics.monitorCache(absentClients, "ratelimiter.client-presence.absent");
+
+        // Invalidations published while this node was unsubscribed are lost, the rebuild picks those clients up
+        redissonClient.getTopic(invalidationChannel, StringCodec.INSTANCE).addListener(new BaseStatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                if (filter != null) {
+                    startRebuild();
+                }
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${ratelimiter.client-presence.rebuild-interval-ms:600000}",
+            fixedDelayString = "${ratelimiter.client-presence.rebuild-interval-ms:600000}")
+    public void startRebuild() {
+        if (!isEnabled || !isRebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        Thread rebuildThread = new Thread(this::rebuild, "client-presence-filter-rebuild");
+        rebuildThread.setDaemon(true);
+        rebuildThread.start();
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        AtomicLong clientCount = new AtomicLong();
+        try {
+            ClientBloomFilter next = new ClientBloomFilter(expectedClients, falsePositiveRate);
+            nextFilter = next;
+            rateLimitConfigScanRepository.scanClientIds(scanBatchSize, clientIds -> {
+                clientIds.forEach(next::add);
+                clientCount.addAndGet(clientIds.size());
+            });
+            filter = next;
+            if (clientCount.get() > expectedClients) {
+                LOGGER.warn("{} clients exceed ratelimiter.client-presence.expected-clients={}, the filter lets more unknown clients through",
+                        clientCount.get(), expectedClients);
+            }
+            LOGGER.info("Client presence filter built with {} clients in {} ms", clientCount.get(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            LOGGER.error("Client presence filter rebuild failed after {} clients, keeping the previous filter", clientCount.get(), e);
+        } finally {
+            nextFilter = null;
+            isRebuilding.set(false);
+        }
+    }
+
+    //TRUE or FALSE when known here, null when the repository has to be asked (then report the answer with record)
+    public Boolean isPresent(String clientId) {
+        if (!isEnabled) {
+            return null;
+        }
+        ClientBloomFilter current = filter;
+        if (current != null && !current.mightContain(clientId)) {
+            rateLimiterMetrics.recordClientFilterRejection();
+            return Boolean.FALSE;
+        }
+        if (presentClients.getIfPresent(clientId) != null) {
+            return Boolean.TRUE;
+        }
+        return absentClients.getIfPresent(clientId) != null ? Boolean.FALSE : null;
+    }
+
+    public void record(String clientId, boolean isPresent) {
+        if (isEnabled) {
+            (isPresent ? presentClients : absentClients).put(clientId, Boolean.TRUE);
+        }
+    }
+
+    //Called for every client added, reconfigured or removed, here or on another node. Removed clients stay in the
+    //filter until the next rebuild and are answered by the negative cache meanwhile.
+    public void onClientChanged(String clientId) {
+        if (!isEnabled) {
+            return;
+        }
+        // The filter being built first: when it is already gone, it has been swapped in as the current one
+        ClientBloomFilter next = nextFilter;
+        if (next != null) {
+            next.add(clientId);
+        }
+        ClientBloomFilter current = filter;
+        if (current != null) {
+            current.add(clientId);
+        }
+        presentClients.invalidate(clientId);
+        absentClients.invalidate(clientId);
+    }
+}
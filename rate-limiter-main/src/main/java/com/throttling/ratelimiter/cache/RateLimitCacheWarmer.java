@@ -0,0 +1,137 @@
+package com.throttling.ratelimiter.cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.repository.RateLimitConfigScanRepository;
+import com.throttling.ratelimiter.util.RateLimitKeyUtil;
+
+//Copies every limit from the repository into the Redis config cache after startup, in the background so the service
+//is ready immediately (a limit not copied yet is read from the repository). Limit ids are walked with SSCAN and each
+//batch is read and written with one pipeline. In lazy mode nothing is copied and entries are cached on first access.
+@Component
+public class RateLimitCacheWarmer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitCacheWarmer.class);
+
+    // Set of ids maintained by Spring Data for @RedisHash("ClientRateLimitData"), hashes live at <keyspace>:<id>
+    private static final String KEYSPACE = "ClientRateLimitData";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RateLimitConfigScanRepository rateLimitConfigScanRepository;
+
+    @Value("${rate.limit.cache.prefix:rate_limit:}")
+    private String cachePrefix;
+
+    @Value("${ratelimiter.cache.warmup.mode:eager}")
+    private String mode;
+
+    @Value("${ratelimiter.cache.warmup.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${ratelimiter.cache.warmup.progress-interval:100000}")
+    private long progressInterval;
+
+    private final AtomicLong warmedUp = new AtomicLong();
+
+    private volatile boolean isRunning;
+
+    private volatile boolean isComplete;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWarmup() {
+        if ("lazy".equalsIgnoreCase(mode)) {
+            LOGGER.info("Rate limit cache warmup disabled, entries are cached on first access.");
+            return;
+        }
+        isRunning = true;
+        Thread warmupThread = new Thread(this::warmUp, "rate-limit-cache-warmup");
+        warmupThread.setDaemon(true);
+        warmupThread.start();
+    }
+
+    @PreDestroy
+    public void stopWarmup() {
+        isRunning = false;
+    }
+
+    private void warmUp() {
+        long start = System.currentTimeMillis();
+        long nextReport = progressInterval;
+        try (Cursor<String> ids = stringRedisTemplate.opsForSet().scan(KEYSPACE, ScanOptions.scanOptions().count(batchSize).build())) {
+            List<String> batch = new ArrayList<>(batchSize);
+            while (isRunning && ids.hasNext()) {
+                batch.add(ids.next());
+                if (batch.size() == batchSize || !ids.hasNext()) {
+                    warmedUp.addAndGet(copyBatch(batch));
+                    batch.clear();
+                    if (warmedUp.get() >= nextReport) {
+                        LOGGER.info("Rate limit cache warmup: {} limits cached in {} ms", warmedUp.get(), System.currentTimeMillis() - start);
+                        nextReport += progressInterval;
+                    }
+                }
+            }
+            isComplete = isRunning;
+            LOGGER.info("Rate limit cache warmup {}: {} limits cached in {} ms", isComplete ? "completed" : "stopped",
+                    warmedUp.get(), System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Rate limit cache warmup failed after {} limits, remaining entries are cached on first access", warmedUp.get(), e);
+        } finally {
+            isRunning = false;
+        }
+    }
+
+    private int copyBatch(List<String> ids) {
+        Map<String, ClientRateLimitData> entries = new LinkedHashMap<>(ids.size() * 2);
+        for (ClientRateLimitData rateLimit : rateLimitConfigScanRepository.findAllById(ids)) {
+            entries.put(cachePrefix + RateLimitKeyUtil.buildRateLimitKey(rateLimit.getClientId(), rateLimit.getLimitType(), rateLimit.getLimitName()), rateLimit);
+        }
+
+        // One SET per entry rather than MSET, the entries of a batch belong to many clients and so to many cluster slots
+        if (!entries.isEmpty()) {
+            @SuppressWarnings("unchecked")
+            RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                entries.forEach((key, rateLimit) -> connection.set(key.getBytes(StandardCharsets.UTF_8), valueSerializer.serialize(rateLimit)));
+                return null;
+            });
+        }
+        return entries.size();
+    }
+
+    public Map<String, Long> getProgress() {
+        Map<String, Long> progress = new LinkedHashMap<>();
+        progress.put("warmupCached", warmedUp.get());
+        progress.put("warmupRunning", isRunning ? 1L : 0L);
+        progress.put("warmupComplete", isComplete ? 1L : 0L);
+        return progress;
+    }
+}
@@ -0,0 +1,147 @@
+package com.throttling.ratelimiter.cache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.redisson.api.RBatch;
+import org.redisson.api.RTopic;
+import org.redisson.api.RTopicAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.throttling.ratelimiter.metrics.RateLimiterMetrics;
+
+//Bounded in-JVM cache of the compiled limit configuration (RateLimitPlan) of each client, keyed by clientId. Clients
+//without limits are cached too, as an empty plan. The plan of a client is dropped on every node through a Redis
+//pub/sub message whenever its configuration changes, and expires after the TTL in any case. The same messages keep
+//ClientPresenceCache up to date.
+@Component
+public class RateLimitConfigNearCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitConfigNearCache.class);
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private RateLimiterMetrics rateLimiterMetrics;
+
+    @Autowired
+    private ClientPresenceCache clientPresenceCache;
+
+    @Value("${ratelimiter.config.near-cache.enabled:true}")
+    private boolean isEnabled;
+
+    @Value("${ratelimiter.config.near-cache.max-size:100000}")
+    private long maxSize;
+
+    @Value("${ratelimiter.config.near-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${ratelimiter.config.near-cache.last-known-ttl-seconds:3600}")
+    private long lastKnownTtlSeconds;
+
+    @Value("${ratelimiter.config.invalidation.channel:rate_limit:config_invalidation}")
+    private String invalidationChannel;
+
+    private Cache<String, RateLimitPlan> cache;
+
+    // Loaded plans kept past the TTL for the Redis fallback, written on loads only
+    private Cache<String, RateLimitPlan> lastKnownPlans;
+
+    private RTopic invalidationTopic;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        rateLimiterMetrics.monitorCache(cache, "ratelimiter.config.near-cache");
+        lastKnownPlans = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(lastKnownTtlSeconds, TimeUnit.SECONDS)
+                .build();
+
+        invalidationTopic = redissonClient.getTopic(invalidationChannel, StringCodec.INSTANCE);
+        invalidationTopic.addListener(String.class, (channel, clientId) -> {
+            evictClient(clientId);
+            LOGGER.debug("Config near-cache invalidated for client: {}", clientId);
+        });
+    }
+
+    public RateLimitPlan get(String clientId, Supplier<RateLimitPlan> loader) {
+        if (!isEnabled) {
+            return loader.get();
+        }
+        return cache.get(clientId, k -> {
+            RateLimitPlan plan = loader.get();
+            lastKnownPlans.put(clientId, plan);
+            return plan;
+        });
+    }
+
+    //Cached plan without loading, null when the client is not cached
+    public RateLimitPlan getIfCached(String clientId) {
+        return isEnabled ? cache.getIfPresent(clientId) : null;
+    }
+
+    //Plan to enforce while Redis is unavailable: the cached one, or the last one loaded when it has expired since
+    public RateLimitPlan getLastKnown(String clientId) {
+        if (!isEnabled) {
+            return null;
+        }
+        RateLimitPlan plan = cache.getIfPresent(clientId);
+        return plan != null ? plan : lastKnownPlans.getIfPresent(clientId);
+    }
+
+    //Drops the client's entries here and asks every other node to do the same
+    public void invalidateClient(String clientId) {
+        evictClient(clientId);
+        invalidationTopic.publish(clientId);
+    }
+
+    //Same for many clients, the messages are published in one batch
+    public void invalidateClients(Collection<String> clientIds) {
+        if (clientIds.isEmpty()) {
+            return;
+        }
+        RBatch batch = redissonClient.createBatch();
+        RTopicAsync topic = batch.getTopic(invalidationChannel, StringCodec.INSTANCE);
+        for (String clientId : clientIds) {
+            evictClient(clientId);
+            topic.publishAsync(clientId);
+        }
+        batch.execute();
+    }
+
+    private void evictClient(String clientId) {
+        cache.invalidate(clientId);
+        lastKnownPlans.invalidate(clientId);
+        clientPresenceCache.onClientChanged(clientId);
+    }
+
+    public Map<String, Long> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("size", cache.estimatedSize());
+        counters.put("hits", stats.hitCount());
+        counters.put("misses", stats.missCount());
+        counters.put("evictions", stats.evictionCount());
+        return counters;
+    }
+}
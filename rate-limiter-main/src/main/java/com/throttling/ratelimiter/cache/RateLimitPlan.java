@@ -0,0 +1,271 @@
+package com.throttling.ratelimiter.cache;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import com.throttling.ratelimiter.constant.RateLimitData;
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+
+//All limits of one client compiled for lookup, so that resolving the limits of a request is a single in-memory
+//traversal. API limit names may be path patterns: "*" matches one path segment and "**" as the last segment matches
+//any number of segments, including none. An exact API name wins over patterns, then the pattern with the longest
+//run of literal leading segments, then "*" over "**". Plans are immutable and rebuilt whenever the client changes.
+//The lists returned by resolve are built once per combination of method and API limit and shared, so resolving
+//allocates nothing (apart from splitting the path when API patterns have to be matched). The decisions and state
+//key of each limit are kept next to it in the plan, and reused for as long as the plan is.
+public final class RateLimitPlan {
+
+    private static final String ANY_SEGMENT = "*";
+    private static final String ANY_PATH = "**";
+
+    private static final RateLimitPlan EMPTY = new RateLimitPlan(null, Collections.emptyMap(), Collections.emptyMap(), null);
+
+    private final ClientRateLimitData defaultLimit;
+    private final Map<String, ClientRateLimitData> methodLimits;
+    private final Map<String, ClientRateLimitData> apiLimits;
+    private final Node apiPatterns;
+
+    // Slot of each method and API limit, 0 stands for no limit of the type
+    private final Map<String, Integer> methodSlots = new HashMap<>();
+    private final Map<ClientRateLimitData, Integer> apiSlots = new IdentityHashMap<>();
+
+    private final Map<ClientRateLimitData, PlannedLimit> plannedLimits = new IdentityHashMap<>();
+
+    // Resolved lists by API slot, then method slot. Filled on first use; a racing reader that sees no list yet
+    // builds an equal one, the lists themselves are safely published through final fields.
+    private final List<ClientRateLimitData>[][] resolvedLimits;
+
+    @SuppressWarnings("unchecked")
+    private RateLimitPlan(ClientRateLimitData defaultLimit, Map<String, ClientRateLimitData> methodLimits,
+            Map<String, ClientRateLimitData> apiLimits, Node apiPatterns) {
+        this.defaultLimit = defaultLimit;
+        this.methodLimits = methodLimits;
+        this.apiLimits = apiLimits;
+        this.apiPatterns = apiPatterns;
+        methodLimits.keySet().forEach(methodName -> methodSlots.put(methodName, methodSlots.size() + 1));
+        apiLimits.values().forEach(apiLimit -> apiSlots.put(apiLimit, apiSlots.size() + 1));
+        if (defaultLimit != null) {
+            plannedLimits.put(defaultLimit, new PlannedLimit(defaultLimit));
+        }
+        methodLimits.values().forEach(methodLimit -> plannedLimits.put(methodLimit, new PlannedLimit(methodLimit)));
+        apiLimits.values().forEach(apiLimit -> plannedLimits.put(apiLimit, new PlannedLimit(apiLimit)));
+        this.resolvedLimits = (List<ClientRateLimitData>[][]) new List<?>[apiSlots.size() + 1][];
+    }
+
+    public static RateLimitPlan compile(Collection<ClientRateLimitData> rateLimits) {
+        if (rateLimits.isEmpty()) {
+            return EMPTY;
+        }
+        ClientRateLimitData defaultLimit = null;
+        Map<String, ClientRateLimitData> methodLimits = new HashMap<>();
+        Map<String, ClientRateLimitData> apiLimits = new HashMap<>();
+        Node apiPatterns = null;
+        for (ClientRateLimitData rateLimit : rateLimits) {
+            switch (rateLimit.getLimitType()) {
+                case DEFAULT:
+                    if (RateLimitData.DEFAULT_LIMIT_NAME.equals(rateLimit.getLimitName())) {
+                        defaultLimit = rateLimit;
+                    }
+                    break;
+                case METHOD:
+                    methodLimits.put(rateLimit.getLimitName(), rateLimit);
+                    break;
+                default:
+                    apiLimits.put(rateLimit.getLimitName(), rateLimit);
+                    if (isPattern(rateLimit.getLimitName())) {
+                        apiPatterns = apiPatterns == null ? new Node() : apiPatterns;
+                        apiPatterns.add(segments(rateLimit.getLimitName()), 0, rateLimit);
+                    }
+            }
+        }
+        return new RateLimitPlan(defaultLimit, methodLimits, apiLimits, apiPatterns);
+    }
+
+    //Applicable limits in evaluation order: DEFAULT, METHOD, API. The list is shared and cannot be modified.
+    public List<ClientRateLimitData> resolve(String methodName, String apiName) {
+        Integer methodSlot = methodSlots.get(methodName);
+        ClientRateLimitData apiLimit = resolveApiLimit(apiName);
+        int apiSlot = apiLimit == null ? 0 : apiSlots.get(apiLimit);
+
+        List<ClientRateLimitData>[] byMethod = resolvedLimits[apiSlot];
+        if (byMethod == null) {
+            @SuppressWarnings("unchecked")
+            List<ClientRateLimitData>[] row = (List<ClientRateLimitData>[]) new List<?>[methodSlots.size() + 1];
+            byMethod = row;
+            resolvedLimits[apiSlot] = byMethod;
+        }
+        List<ClientRateLimitData> rateLimits = byMethod[methodSlot == null ? 0 : methodSlot];
+        if (rateLimits == null) {
+            List<PlannedLimit> limits = new ArrayList<>(3);
+            addIfNotNull(limits, defaultLimit);
+            addIfNotNull(limits, methodSlot == null ? null : methodLimits.get(methodName));
+            addIfNotNull(limits, apiLimit);
+            rateLimits = new ResolvedLimits(limits.toArray(new PlannedLimit[0]));
+            byMethod[methodSlot == null ? 0 : methodSlot] = rateLimits;
+        }
+        return rateLimits;
+    }
+
+    //The limit configured under exactly this type and name, patterns are not expanded
+    public ClientRateLimitData getLimit(LimitType limitType, String limitName) {
+        switch (limitType) {
+            case DEFAULT:
+                return RateLimitData.DEFAULT_LIMIT_NAME.equals(limitName) ? defaultLimit : null;
+            case METHOD:
+                return methodLimits.get(limitName);
+            default:
+                return apiLimits.get(limitName);
+        }
+    }
+
+    private ClientRateLimitData resolveApiLimit(String apiName) {
+        if (apiName == null) {
+            return null;
+        }
+        ClientRateLimitData apiLimit = apiLimits.get(apiName);
+        if (apiLimit != null || apiPatterns == null) {
+            return apiLimit;
+        }
+        return apiPatterns.match(segments(apiName), 0);
+    }
+
+    //Allowed by the index-th limit of the list, with the decision built with the plan when the list was resolved by
+    //one and there is no wait. Other lists, e.g. of shard sub-limits, get a new decision.
+    public static RateLimitDecision allowed(List<ClientRateLimitData> rateLimits, int index, long waitMillis) {
+        if (waitMillis == 0 && rateLimits instanceof ResolvedLimits) {
+            return ((ResolvedLimits) rateLimits).plannedLimits[index].allowedDecision;
+        }
+        return RateLimitDecision.allowed(rateLimits.get(index), waitMillis);
+    }
+
+    //Denied by the index-th limit of the list, shared in the same way when there is no retry time to report
+    public static RateLimitDecision denied(List<ClientRateLimitData> rateLimits, int index, long retryAfterMillis) {
+        if (retryAfterMillis == 0 && rateLimits instanceof ResolvedLimits) {
+            return ((ResolvedLimits) rateLimits).plannedLimits[index].deniedDecision;
+        }
+        return RateLimitDecision.denied(rateLimits.get(index), retryAfterMillis);
+    }
+
+    //Key of the state of the index-th limit under statePrefix, see RateLimitStateRepository. Built on first use for
+    //the limits of a plan; a racing first use builds an equal key.
+    public static String stateKey(List<ClientRateLimitData> rateLimits, int index, String statePrefix) {
+        if (!(rateLimits instanceof ResolvedLimits)) {
+            return statePrefix + rateLimits.get(index).getId();
+        }
+        PlannedLimit plannedLimit = ((ResolvedLimits) rateLimits).plannedLimits[index];
+        String stateKey = plannedLimit.stateKey;
+        if (stateKey == null) {
+            stateKey = statePrefix + plannedLimit.limit.getId();
+            plannedLimit.stateKey = stateKey;
+        }
+        return stateKey;
+    }
+
+    private void addIfNotNull(List<PlannedLimit> limits, ClientRateLimitData rateLimit) {
+        if (rateLimit != null) {
+            limits.add(plannedLimits.get(rateLimit));
+        }
+    }
+
+    private static boolean isPattern(String apiName) {
+        for (String segment : segments(apiName)) {
+            if (ANY_SEGMENT.equals(segment) || ANY_PATH.equals(segment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Empty segments are ignored, "/orders/" and "orders" have the same single segment
+    private static String[] segments(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            end = end < 0 ? path.length() : end;
+            if (end > start) {
+                segments.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    //A limit of the plan with the values derived from it
+    private static final class PlannedLimit {
+
+        private final ClientRateLimitData limit;
+        private final RateLimitDecision allowedDecision;
+        private final RateLimitDecision deniedDecision;
+        private String stateKey;
+
+        PlannedLimit(ClientRateLimitData limit) {
+            this.limit = limit;
+            this.allowedDecision = RateLimitDecision.allowed(limit);
+            this.deniedDecision = RateLimitDecision.denied(limit);
+        }
+    }
+
+    //Unmodifiable view of the limits of a resolved list
+    private static final class ResolvedLimits extends AbstractList<ClientRateLimitData> implements RandomAccess {
+
+        private final PlannedLimit[] plannedLimits;
+
+        ResolvedLimits(PlannedLimit[] plannedLimits) {
+            this.plannedLimits = plannedLimits;
+        }
+
+        @Override
+        public ClientRateLimitData get(int index) {
+            return plannedLimits[index].limit;
+        }
+
+        @Override
+        public int size() {
+            return plannedLimits.length;
+        }
+    }
+
+    private static final class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private Node anySegment;
+        private ClientRateLimitData limit;
+        private ClientRateLimitData anyPathLimit;
+
+        void add(String[] segments, int index, ClientRateLimitData rateLimit) {
+            if (index == segments.length) {
+                limit = rateLimit;
+            } else if (ANY_PATH.equals(segments[index]) && index == segments.length - 1) {
+                anyPathLimit = rateLimit;
+            } else if (ANY_SEGMENT.equals(segments[index])) {
+                anySegment = anySegment == null ? new Node() : anySegment;
+                anySegment.add(segments, index + 1, rateLimit);
+            } else {
+                // "**" anywhere but last is taken literally
+                children.computeIfAbsent(segments[index], segment -> new Node()).add(segments, index + 1, rateLimit);
+            }
+        }
+
+        ClientRateLimitData match(String[] segments, int index) {
+            if (index == segments.length) {
+                return limit != null ? limit : anyPathLimit;
+            }
+            Node child = children.get(segments[index]);
+            ClientRateLimitData match = child == null ? null : child.match(segments, index + 1);
+            if (match == null && anySegment != null) {
+                match = anySegment.match(segments, index + 1);
+            }
+            return match != null ? match : anyPathLimit;
+        }
+    }
+}
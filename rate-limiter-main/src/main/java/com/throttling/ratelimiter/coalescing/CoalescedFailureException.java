@@ -0,0 +1,12 @@
+package com.throttling.ratelimiter.coalescing;
+
+//Failure of a coalesced batch as seen by all of its callers but one. The remaining caller gets the failure itself, so
+//that the circuit breaker counts one failure per batch rather than one per caller.
+public class CoalescedFailureException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CoalescedFailureException(RuntimeException batchFailure) {
+        super(batchFailure.getMessage(), batchFailure);
+    }
+}
@@ -0,0 +1,190 @@
+package com.throttling.ratelimiter.coalescing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.throttling.ratelimiter.engine.RateLimitEngine;
+import com.throttling.ratelimiter.metrics.RateLimiterMetrics;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+import com.throttling.ratelimiter.pojo.request.ClientApiRequest;
+import com.throttling.ratelimiter.sharding.LimitShardRouter;
+
+//Group commit of concurrent checks of the same client: requests queue up per client, and one of the waiting threads
+//takes up to max-batch-size of them (waiting window-micros for more to arrive) and evaluates them with a single
+//tryAcquireAll, i.e. one script call or one lock acquisition, state read and state write for all of them. Every
+//caller gets its own decision, in arrival order. A request that finds no other one pending or being evaluated is
+//evaluated on its own right away, without being queued. Engines that evaluate a batch one request at a time, and
+//sharded clients whose requests are spread over shards, bypass the queues: waiting would only serialize them.
+@Component
+public class RequestCoalescer {
+
+    // Safety net only, the thread finishing a batch wakes up the next pending request
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // A queue expiring while in use only splits its client's requests over two queues until the old one drains
+    private static final long QUEUE_IDLE_MINUTES = 5;
+
+    @Autowired
+    private RateLimitEngine rateLimitEngine;
+
+    @Autowired
+    private RateLimiterMetrics rateLimiterMetrics;
+
+    @Autowired
+    private LimitShardRouter limitShardRouter;
+
+    @Value("${ratelimiter.coalescing.enabled:false}")
+    private boolean isEnabled;
+
+    @Value("${ratelimiter.coalescing.window-micros:0}")
+    private long windowMicros;
+
+    @Value("${ratelimiter.coalescing.max-batch-size:64}")
+    private int maxBatchSize;
+
+    // Kept while the client is active, so that its requests find the same queue without allocating one
+    private final Cache<String, ClientQueue> clientQueues = Caffeine.newBuilder()
+            .expireAfterAccess(QUEUE_IDLE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    public RateLimitDecision tryAcquire(ClientApiRequest clientApiRequest) {
+        if (!isEnabled || !rateLimitEngine.supportsGroupCommit() || limitShardRouter.isSharded(clientApiRequest.getClientId())) {
+            return rateLimitEngine.tryAcquire(clientApiRequest.getClientId(), clientApiRequest.getMethodName().name(),
+                    clientApiRequest.getApiName(), clientApiRequest.getCost(), clientApiRequest.getMaxWaitMillis());
+        }
+
+        ClientQueue clientQueue = clientQueues.get(clientApiRequest.getClientId(), clientId -> new ClientQueue());
+        if (clientQueue.pending.isEmpty() && clientQueue.isEvaluating.compareAndSet(false, true)) {
+            return evaluateAlone(clientQueue, clientApiRequest);
+        }
+
+        PendingRequest pendingRequest = new PendingRequest(clientApiRequest);
+        clientQueue.pending.add(pendingRequest);
+
+        while (!pendingRequest.isDone) {
+            if (clientQueue.isEvaluating.compareAndSet(false, true)) {
+                try {
+                    evaluateBatch(clientQueue);
+                } finally {
+                    clientQueue.isEvaluating.set(false);
+                }
+                // Hand over to a request that arrived during the batch
+                PendingRequest next = clientQueue.pending.peek();
+                if (next != null) {
+                    LockSupport.unpark(next.waiter);
+                }
+            } else {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+        }
+
+        if (pendingRequest.failure instanceof Error) {
+            throw (Error) pendingRequest.failure;
+        }
+        if (pendingRequest.failure != null) {
+            throw (RuntimeException) pendingRequest.failure;
+        }
+        return pendingRequest.decision;
+    }
+
+    private RateLimitDecision evaluateAlone(ClientQueue clientQueue, ClientApiRequest clientApiRequest) {
+        try {
+            rateLimiterMetrics.recordCoalescedBatch(1);
+            return rateLimitEngine.tryAcquire(clientApiRequest.getClientId(), clientApiRequest.getMethodName().name(),
+                    clientApiRequest.getApiName(), clientApiRequest.getCost(), clientApiRequest.getMaxWaitMillis());
+        } finally {
+            clientQueue.isEvaluating.set(false);
+            // Requests that queued up meanwhile are waiting for an evaluating thread
+            PendingRequest next = clientQueue.pending.peek();
+            if (next != null) {
+                LockSupport.unpark(next.waiter);
+            }
+        }
+    }
+
+    private void evaluateBatch(ClientQueue clientQueue) {
+        if (windowMicros > 0) {
+            LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(windowMicros));
+        }
+
+        List<PendingRequest> batch = new ArrayList<>();
+        PendingRequest pendingRequest;
+        while (batch.size() < maxBatchSize && (pendingRequest = clientQueue.pending.poll()) != null) {
+            batch.add(pendingRequest);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        rateLimiterMetrics.recordCoalescedBatch(batch.size());
+
+        try {
+            if (batch.size() == 1) {
+                ClientApiRequest request = batch.get(0).request;
+                batch.get(0).decision = rateLimitEngine.tryAcquire(request.getClientId(), request.getMethodName().name(),
+                        request.getApiName(), request.getCost(), request.getMaxWaitMillis());
+            } else {
+                List<ClientApiRequest> requests = new ArrayList<>(batch.size());
+                for (PendingRequest request : batch) {
+                    requests.add(request.request);
+                }
+                List<RateLimitDecision> decisions = rateLimitEngine.tryAcquireAll(requests);
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).decision = decisions.get(i);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Every caller of the batch sees the failure, e.g. to fall back on its own, but only one of them as a
+            // failure of its own call
+            batch.get(0).failure = e;
+            for (int i = 1; i < batch.size(); i++) {
+                batch.get(i).failure = new CoalescedFailureException(e);
+            }
+        } catch (Error e) {
+            for (PendingRequest request : batch) {
+                request.failure = e;
+            }
+            throw e;
+        } finally {
+            for (PendingRequest request : batch) {
+                request.isDone = true;
+                LockSupport.unpark(request.waiter);
+            }
+        }
+    }
+
+    private static final class ClientQueue {
+
+        private final Queue<PendingRequest> pending = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean isEvaluating = new AtomicBoolean();
+    }
+
+    // Written by the evaluating thread before isDone, read by the waiter after it
+    private static final class PendingRequest {
+
+        private final ClientApiRequest request;
+
+        private final Thread waiter = Thread.currentThread();
+
+        private RateLimitDecision decision;
+
+        private Throwable failure;
+
+        private volatile boolean isDone;
+
+        private PendingRequest(ClientApiRequest request) {
+            this.request = request;
+        }
+    }
+}
@@ -1,22 +1,113 @@
 package com.throttling.ratelimiter.config;
 
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.redisson.config.BaseConfig;
+import org.redisson.config.ReadMode;
+import org.redisson.spring.starter.RedissonAutoConfigurationCustomizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scripting.support.ResourceScriptSource;
+
+import com.throttling.ratelimiter.serializer.RateLimitDataRedisSerializer;
+import com.throttling.ratelimiter.util.RateLimitKeyUtil;
 
 
 @Configuration
 public class RedisConfig {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisConfig.class);
+
+    @Value("${ratelimiter.redis.hash-tags:false}")
+    private boolean isHashTagged;
+
+    @Value("${spring.redis.cluster.nodes:}")
+    private String clusterNodes;
+
+    //Key layout has to be known before the first limit is built
+    @PostConstruct
+    public void configureKeyLayout() {
+        RateLimitKeyUtil.setHashTagged(isHashTagged);
+        if (!clusterNodes.isEmpty() && !isHashTagged) {
+            LOGGER.warn("Redis Cluster configured without ratelimiter.redis.hash-tags, keys of a client are spread over the "
+                    + "cluster and reading a client's limits fails with CROSSSLOT");
+        }
+    }
+
+    //Bounded command timeouts and retries (spring.redis.timeout only sets the connect timeout), a stalled Redis fails a
+    //request within about (retry-attempts + 1) * timeout-ms + retry-attempts * retry-interval-ms
+    @Bean
+    public RedissonAutoConfigurationCustomizer redisTimeoutCustomizer(
+            @Value("${ratelimiter.redis.timeout-ms:250}") int timeoutMillis,
+            @Value("${ratelimiter.redis.retry-attempts:1}") int retryAttempts,
+            @Value("${ratelimiter.redis.retry-interval-ms:50}") int retryIntervalMillis) {
+        return config -> {
+            BaseConfig<?> serversConfig = config.isClusterConfig() ? config.useClusterServers()
+                    : config.isSentinelConfig() ? config.useSentinelServers() : config.useSingleServer();
+            serversConfig.setTimeout(timeoutMillis).setRetryAttempts(retryAttempts).setRetryInterval(retryIntervalMillis);
+        };
+    }
+
+    //Redis Cluster (spring.redis.cluster.nodes, the Redisson starter creates the cluster client): follow topology
+    //changes and read from masters only, limit state read from a replica could be behind the last permit taken
+    @Bean
+    @ConditionalOnProperty("spring.redis.cluster.nodes")
+    public RedissonAutoConfigurationCustomizer redisClusterCustomizer(
+            @Value("${ratelimiter.redis.cluster.scan-interval-ms:1000}") int scanIntervalMillis) {
+        return config -> config.useClusterServers()
+                .setScanInterval(scanIntervalMillis)
+                .setReadMode(ReadMode.MASTER)
+                .setCheckSlotsCoverage(true);
+    }
+
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setValueSerializer(new RateLimitDataRedisSerializer());
         return template;
     }
+
+    //rate limit check of every algorithm executed server side through EVALSHA
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> rateLimitScript() {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/rate_limit.lua")));
+        script.setResultType(List.class);
+        return script;
+    }
+
+    //token bucket permits leased to a node, see LeasingRateLimitEngine
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> tokenLeaseScript() {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/token_lease.lua")));
+        script.setResultType(List.class);
+        return script;
+    }
+
+    //single SSCAN step from a given cursor, see RateLimitConfigScanRepository
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> scanPageScript() {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/scan_page.lua")));
+        script.setResultType(List.class);
+        return script;
+    }
 }
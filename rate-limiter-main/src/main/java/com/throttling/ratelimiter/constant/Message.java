@@ -8,4 +8,5 @@ public class Message {
   public static final String NO_LIMIT_APPLICABLE = "No limits applicable";
   public static final String CLIENT_ID_NULL="Client ID cannot be null or empty";
   public static final String INVALID_TIME_UNIT="Invalid timeUnit supplied for conversion";
+  public static final String INVALID_COST="Request cost must be positive and max wait must not be negative";
 }
@@ -3,35 +3,66 @@ package com.throttling.ratelimiter.controller;
 import com.throttling.ratelimiter.pojo.request.ClientApiRequest;
 import com.throttling.ratelimiter.pojo.request.ClientConfigRequest;
 import com.throttling.ratelimiter.pojo.response.BaseResponse;
+import com.throttling.ratelimiter.pojo.response.BulkImportReport;
+import com.throttling.ratelimiter.pojo.response.RateLimitPage;
+import com.throttling.ratelimiter.service.ClientConfigBulkService;
 import com.throttling.ratelimiter.service.ClientConfigService;
 import com.throttling.ratelimiter.service.ClientRateLimitingService;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/ratelimiter")
 public class ClientLimitConfigController {
 
+  private static final String NDJSON = "application/x-ndjson";
+
   @Autowired
   private ClientConfigService clientConfigService;
 
   @Autowired
   private ClientRateLimitingService clientRateLimitingService;
 
+  @Autowired
+  private ClientConfigBulkService clientConfigBulkService;
+
   @PostMapping("/configure-client")
   public BaseResponse configureClient(@RequestBody ClientConfigRequest clientConfigRequest) {
     return clientConfigService.addOrUpdateRateLimits(clientConfigRequest);
   }
 
   @PostMapping("/verify-api-limit")
-  public BaseResponse verifyApiLimit(@RequestBody ClientApiRequest clientApiRequest) {
-    return clientRateLimitingService.verifyApiLimit(clientApiRequest);
+  public BaseResponse verifyApiLimit(@RequestBody ClientApiRequest clientApiRequest, HttpServletResponse response) {
+    return setRetryAfter(clientRateLimitingService.verifyApiLimit(clientApiRequest), response);
+  }
+
+  //Served asynchronously, the request thread is released while Redis answers
+  @PostMapping("/reactive/verify-api-limit")
+  public Mono<BaseResponse> verifyApiLimitReactive(@RequestBody ClientApiRequest clientApiRequest,
+      HttpServletResponse response) {
+    return clientRateLimitingService.verifyApiLimitReactive(clientApiRequest)
+        .doOnNext(baseResponse -> setRetryAfter(baseResponse, response));
+  }
+
+  @PostMapping("/verify-api-limits")
+  public List<BaseResponse> verifyApiLimits(@RequestBody List<ClientApiRequest> clientApiRequests) {
+    return clientRateLimitingService.verifyApiLimits(clientApiRequests);
   }
 
   @GetMapping("/configured-limits")
@@ -44,6 +75,56 @@ public class ClientLimitConfigController {
       return  clientConfigService.getClientLimits(clientConfigRequest.getClientId());
   }
   
+  //Cursor based listing, start with cursor 0 and pass the returned cursor until it is 0 again
+  @GetMapping("/configured-limits/page")
+  public RateLimitPage getConfiguredLimitsPage(@RequestParam(defaultValue = "0") String cursor,
+      @RequestParam(defaultValue = "100") int count) {
+      return clientConfigService.getRateLimitsPage(cursor, count);
+  }
+
+  @GetMapping("/client-limits/page")
+  public RateLimitPage getClientLimitsPage(@RequestParam String clientId, @RequestParam(defaultValue = "0") String cursor,
+      @RequestParam(defaultValue = "100") int count) {
+      return clientConfigService.getClientLimitsPage(clientId, cursor, count);
+  }
+
+  //Newline delimited JSON written while the limits are read, written on the request thread so that
+  //long exports are not cut off by the async request timeout
+  @GetMapping("/configured-limits/stream")
+  public void streamConfiguredLimits(HttpServletResponse response) throws IOException {
+      response.setContentType(NDJSON);
+      try (OutputStream outputStream = new BufferedOutputStream(response.getOutputStream())) {
+          clientConfigService.streamRateLimits(outputStream);
+      }
+  }
+
+  @GetMapping("/client-limits/stream")
+  public void streamClientLimits(@RequestParam String clientId, HttpServletResponse response) throws IOException {
+      response.setContentType(NDJSON);
+      try (OutputStream outputStream = new BufferedOutputStream(response.getOutputStream())) {
+          clientConfigService.streamClientLimits(clientId, outputStream);
+      }
+  }
+
+  //Newline delimited /configure-client requests, read as they arrive and written in pipelined batches
+  @PostMapping("/import")
+  public BulkImportReport importClients(HttpServletRequest request) throws IOException {
+      return clientConfigBulkService.importClients(request.getInputStream());
+  }
+
+  @GetMapping("/export")
+  public void exportClients(HttpServletResponse response) throws IOException {
+      response.setContentType(NDJSON);
+      try (OutputStream outputStream = new BufferedOutputStream(response.getOutputStream())) {
+          clientConfigBulkService.exportClients(outputStream);
+      }
+  }
+
+  @GetMapping("/config-cache-stats")
+  public Map<String, Long> getConfigCacheStats() {
+      return clientConfigService.getConfigCacheStats();
+  }
+
   @DeleteMapping("/delete-limits")
   public BaseResponse deleteLimit(@RequestBody ClientConfigRequest clientConfigRequest) {
       return clientConfigService.deleteRateLimits(clientConfigRequest);
@@ -54,4 +135,12 @@ public class ClientLimitConfigController {
       return clientConfigService.removeClient(clientConfigRequest.getClientId());
   }
 
+  //Whole seconds rounded up, the wait in milliseconds is in the body
+  private static BaseResponse setRetryAfter(BaseResponse baseResponse, HttpServletResponse response) {
+    if (baseResponse.getRetryAfterMillis() > 0) {
+      response.setHeader(HttpHeaders.RETRY_AFTER,
+          String.valueOf((baseResponse.getRetryAfterMillis() + TimeUnit.SECONDS.toMillis(1) - 1) / TimeUnit.SECONDS.toMillis(1)));
+    }
+    return baseResponse;
+  }
 }
@@ -1,5 +1,6 @@
 package com.throttling.ratelimiter.converter;
 
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
 import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
 import com.throttling.ratelimiter.pojo.request.ClientConfigRequest;
 import com.throttling.ratelimiter.pojo.request.ClientLimitsConfigRequest;
@@ -14,14 +15,13 @@ public class ClientConfigRequestConverter {
 
     //converts request data into client rate limit data
     public List<ClientRateLimitData> convert(ClientConfigRequest clientConfigRequest) {
-        long currentTimestamp = System.currentTimeMillis();
         List<ClientRateLimitData> clientRateLimits = new ArrayList<>();
         
         if(clientConfigRequest.getLimits()!=null)
         {
         // Process each ClientLimitsConfigRequest in the request
         for (ClientLimitsConfigRequest limitsConfig : clientConfigRequest.getLimits()) {
-            clientRateLimits.add(createRateLimitData(clientConfigRequest.getClientId(), limitsConfig, currentTimestamp));
+            clientRateLimits.add(createRateLimitData(clientConfigRequest.getClientId(), limitsConfig));
         }
         }
 
@@ -29,17 +29,45 @@ public class ClientConfigRequestConverter {
     }
 
     
-    private ClientRateLimitData createRateLimitData(String clientId, ClientLimitsConfigRequest limitsConfig, long currentTimestamp) {
+    private ClientRateLimitData createRateLimitData(String clientId, ClientLimitsConfigRequest limitsConfig) {
         ClientIntervalRequestsLimit timeIntervalLimit = limitsConfig.getTimeIntervalLimit();
 
-        return new ClientRateLimitData(
+        ClientRateLimitData rateLimitData = new ClientRateLimitData(
                 clientId,
                 limitsConfig.getLimitType(),
                 limitsConfig.getLimitName(),
                 timeIntervalLimit.getTimeUnit(),
                 timeIntervalLimit.getMaxRequests(),
-                timeIntervalLimit.getMaxRequests(),
-                currentTimestamp
+                limitsConfig.getAlgorithm() == null ? RateLimitAlgorithm.TOKEN_BUCKET : limitsConfig.getAlgorithm()
         );
+        if (limitsConfig.getBurst() != null) {
+            rateLimitData.setBurst(limitsConfig.getBurst());
+        }
+        return rateLimitData;
+    }
+
+    //converts stored limits of a client back into the request that configures them
+    public ClientConfigRequest toRequest(String clientId, List<ClientRateLimitData> rateLimits) {
+        List<ClientLimitsConfigRequest> limits = new ArrayList<>(rateLimits.size());
+        for (ClientRateLimitData rateLimit : rateLimits) {
+            ClientIntervalRequestsLimit timeIntervalLimit = new ClientIntervalRequestsLimit();
+            timeIntervalLimit.setTimeUnit(rateLimit.getTimeUnit());
+            timeIntervalLimit.setMaxRequests(rateLimit.getMaxPermits());
+
+            ClientLimitsConfigRequest limitsConfig = new ClientLimitsConfigRequest();
+            limitsConfig.setLimitType(rateLimit.getLimitType());
+            limitsConfig.setLimitName(rateLimit.getLimitName());
+            limitsConfig.setTimeIntervalLimit(timeIntervalLimit);
+            limitsConfig.setAlgorithm(rateLimit.getAlgorithm());
+            if (rateLimit.getAlgorithm() == RateLimitAlgorithm.GCRA) {
+                limitsConfig.setBurst(rateLimit.getBurst());
+            }
+            limits.add(limitsConfig);
+        }
+
+        ClientConfigRequest clientConfigRequest = new ClientConfigRequest();
+        clientConfigRequest.setClientId(clientId);
+        clientConfigRequest.setLimits(limits);
+        return clientConfigRequest;
     }
 }
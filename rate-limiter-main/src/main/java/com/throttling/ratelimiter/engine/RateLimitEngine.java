@@ -0,0 +1,46 @@
+package com.throttling.ratelimiter.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+import com.throttling.ratelimiter.pojo.request.ClientApiRequest;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+//Evaluates the applicable limits of an already validated client, selected with ratelimiter.engine
+public interface RateLimitEngine {
+
+  //Takes permits from every applicable limit or from none of them. With a positive maxWaitMillis, permits available
+  //within that wait are reserved and the decision carries the wait; sliding window limits cannot reserve and deny.
+  RateLimitDecision tryAcquire(String clientId, String methodName, String apiName, long permits, long maxWaitMillis);
+
+  default RateLimitDecision tryAcquire(String clientId, String methodName, String apiName) {
+    return tryAcquire(clientId, methodName, apiName, 1, 0);
+  }
+
+  //Engines that wait on Redis or locks run tryAcquire on the bounded elastic scheduler unless they override this
+  default Mono<RateLimitDecision> tryAcquireReactive(String clientId, String methodName, String apiName, long permits,
+      long maxWaitMillis) {
+    return Mono.fromCallable(() -> tryAcquire(clientId, methodName, apiName, permits, maxWaitMillis))
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  //Decisions in request order, requests of the same client are applied one after the other
+  default List<RateLimitDecision> tryAcquireAll(List<ClientApiRequest> clientApiRequests) {
+    List<RateLimitDecision> decisions = new ArrayList<>(clientApiRequests.size());
+    for (ClientApiRequest request : clientApiRequests) {
+      decisions.add(tryAcquire(request.getClientId(), request.getMethodName().name(), request.getApiName(),
+          request.getCost(), request.getMaxWaitMillis()));
+    }
+    return decisions;
+  }
+
+  //Whether tryAcquireAll evaluates the requests of one client together, with one script call or lock acquisition.
+  //Only then is it worth making concurrent requests of a client wait for each other, see RequestCoalescer.
+  default boolean supportsGroupCommit() {
+    return false;
+  }
+
+}
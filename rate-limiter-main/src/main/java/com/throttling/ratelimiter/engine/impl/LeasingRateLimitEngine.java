@@ -0,0 +1,278 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.throttling.ratelimiter.cache.RateLimitPlan;
+import com.throttling.ratelimiter.engine.RateLimitEngine;
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+import com.throttling.ratelimiter.repository.RateLimitStateRepository;
+import com.throttling.ratelimiter.service.impl.ClientConfigServiceImpl;
+import com.throttling.ratelimiter.util.TimeUnitConversionUtil;
+
+//Token bucket permits leased from Redis in blocks and served from memory, so that busy clients cost one
+//Redis call per lease instead of one per request. A node admits at most one lease worth of permits ahead
+//of the shared bucket; unused permits go back when the lease expires. Requests involving other algorithms,
+//costing more than one permit or accepting a wait are evaluated by the rate limit script as with the
+//redis-script engine, and so are requests arriving while the lease of one of their limits is being renewed. Redis
+//is never called while holding the monitor of a lease.
+@Component
+@ConditionalOnProperty(name = "ratelimiter.engine", havingValue = "redis-lease")
+public class LeasingRateLimitEngine implements RateLimitEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeasingRateLimitEngine.class);
+
+    private static final long NANOS_IN_MILLI = 1_000_000L;
+
+    private static final long IDLE_LEASE_DURATIONS = 20;
+
+    private static final List<Long> NOTHING_GRANTED = Arrays.asList(0L, 0L);
+
+    // Returned by take while another request renews the lease
+    private static final PermitLease RENEWAL_IN_FLIGHT = new PermitLease(null);
+
+    @Autowired
+    private ClientConfigServiceImpl clientConfigServiceImpl;
+
+    @Autowired
+    private RateLimitStateRepository rateLimitStateRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisClock redisClock;
+
+    @Autowired
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> rateLimitScript;
+
+    @Autowired
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> tokenLeaseScript;
+
+    @Value("${ratelimiter.lease.duration-ms:250}")
+    private long leaseDurationMillis;
+
+    // Share of a bucket a single node may hold, bounds the over-admission of a node
+    @Value("${ratelimiter.lease.max-fraction:0.1}")
+    private double maxLeaseFraction;
+
+    @Value("${ratelimiter.lease.ewma-alpha:0.3}")
+    private double ewmaAlpha;
+
+    private final ConcurrentMap<String, PermitLease> leases = new ConcurrentHashMap<>();
+
+    @Override
+    public RateLimitDecision tryAcquire(String clientId, String methodName, String apiName, long permits, long maxWaitMillis) {
+        List<ClientRateLimitData> applicableApiLimits = clientConfigServiceImpl.fetchApplicableRateLimits(clientId, methodName, apiName);
+        if (applicableApiLimits.isEmpty()) {
+            return RateLimitDecision.noLimits();
+        }
+        if (permits != 1 || maxWaitMillis > 0
+                || applicableApiLimits.stream().anyMatch(limit -> limit.getAlgorithm() != RateLimitAlgorithm.TOKEN_BUCKET)) {
+            return evaluateWithScript(applicableApiLimits, permits, maxWaitMillis);
+        }
+
+        int size = applicableApiLimits.size();
+        PermitLease[] taken = new PermitLease[size];
+        for (int i = 0; i < size; i++) {
+            ClientRateLimitData limit = applicableApiLimits.get(i);
+            PermitLease lease;
+            try {
+                lease = take(limit);
+            } catch (RuntimeException | Error e) {
+                // A failed renewal takes nothing, and neither does the request from the leases before it
+                giveBack(taken);
+                throw e;
+            }
+            if (lease == null || lease == RENEWAL_IN_FLIGHT) {
+                // All or nothing, give back permits taken from the previous leases
+                giveBack(taken);
+                if (lease == null) {
+                    return RateLimitPlan.denied(applicableApiLimits, i, retryAfterMillis(limit));
+                }
+                // Decided by the shared bucket rather than waiting for the renewal
+                return evaluateWithScript(applicableApiLimits, permits, maxWaitMillis);
+            }
+            taken[i] = lease;
+        }
+        return RateLimitPlan.allowed(applicableApiLimits, size - 1, 0);
+    }
+
+    private static void giveBack(PermitLease[] taken) {
+        for (PermitLease lease : taken) {
+            if (lease != null) {
+                synchronized (lease) {
+                    lease.giveBack();
+                }
+            }
+        }
+    }
+
+    //Returns the lease a permit was taken from, null when the bucket has none left, RENEWAL_IN_FLIGHT when another
+    //request is renewing the lease
+    private PermitLease take(ClientRateLimitData limit) {
+        long durationNanos = leaseDurationMillis * NANOS_IN_MILLI;
+        PermitLease lease;
+        long nowNanos;
+        long returned;
+        long leaseSize;
+        while (true) {
+            lease = getLease(limit);
+            synchronized (lease) {
+                if (lease.isRetired()) {
+                    // Dropped by the sweeper in the meantime
+                    continue;
+                }
+                nowNanos = System.nanoTime();
+                if (lease.tryTake(nowNanos)) {
+                    return lease;
+                }
+                if (lease.isRenewing()) {
+                    return RENEWAL_IN_FLIGHT;
+                }
+                // Empty or expired, return what is left and lease a new block sized on the observed rate
+                leaseSize = lease.nextLeaseSize(nowNanos, durationNanos, ewmaAlpha, maxLeaseSize(limit));
+                returned = lease.release();
+                lease.startRenewal();
+                break;
+            }
+        }
+
+        List<Long> result;
+        try {
+            result = executeLease(limit, returned, leaseSize);
+        } catch (RuntimeException | Error e) {
+            synchronized (lease) {
+                lease.endRenewal();
+            }
+            throw e;
+        }
+        synchronized (lease) {
+            lease.renew(result.get(0), nowNanos, durationNanos);
+            lease.setRetryAfterMillis(result.get(1));
+            lease.endRenewal();
+            return lease.tryTake(nowNanos) ? lease : null;
+        }
+    }
+
+    //Wait reported when the lease of the limit could not be renewed
+    private long retryAfterMillis(ClientRateLimitData limit) {
+        PermitLease lease = getLease(limit);
+        synchronized (lease) {
+            return lease.getRetryAfterMillis();
+        }
+    }
+
+    //Permits granted and, when none is, the wait before the bucket has one again
+    @SuppressWarnings("unchecked")
+    private List<Long> executeLease(ClientRateLimitData limit, long returned, long requested) {
+        List<Long> result = stringRedisTemplate.execute(tokenLeaseScript,
+                Collections.singletonList(rateLimitStateRepository.buildStateKey(limit)),
+                String.valueOf(redisClock.currentTimeMillis()), String.valueOf(limit.getMaxPermits()),
+                String.valueOf(TimeUnitConversionUtil.toMillis(limit.getTimeUnit())),
+                String.valueOf(returned), String.valueOf(requested));
+        return result == null ? NOTHING_GRANTED : result;
+    }
+
+    private long maxLeaseSize(ClientRateLimitData limit) {
+        return Math.max(1, (long) (limit.getMaxPermits() * maxLeaseFraction));
+    }
+
+    private PermitLease getLease(ClientRateLimitData limit) {
+        PermitLease lease = leases.get(limit.getId());
+        if (lease != null && lease.isConfiguredFor(limit)) {
+            return lease;
+        }
+        // New or reconfigured limit, the permits of a previous configuration are dropped with its state
+        return leases.compute(limit.getId(), (id, current) -> {
+            if (current != null && current.isConfiguredFor(limit)) {
+                return current;
+            }
+            if (current != null) {
+                current.retire();
+            }
+            return new PermitLease(limit);
+        });
+    }
+
+    private RateLimitDecision evaluateWithScript(List<ClientRateLimitData> applicableApiLimits, long permits, long maxWaitMillis) {
+        RateLimitScriptCall call = new RateLimitScriptCall(rateLimitStateRepository::buildStateKey);
+        call.addRequest(0, applicableApiLimits, permits, maxWaitMillis);
+
+        @SuppressWarnings("unchecked")
+        List<Long> result = (List<Long>) stringRedisTemplate.execute(rateLimitScript, call.getKeys(),
+                (Object[]) call.buildArgs(redisClock.currentTimeMillis()));
+        return call.toDecision(0, result);
+    }
+
+    //Returns the permits of expired leases and forgets the leases of limits idle for a while, keeping the
+    //rate history of busy limits whose lease just ran out. A lease being renewed is left to its renewal.
+    @Scheduled(fixedDelayString = "${ratelimiter.lease.sweep-interval-ms:1000}")
+    public void returnExpiredLeases() {
+        long nowNanos = System.nanoTime();
+        long idleNanos = IDLE_LEASE_DURATIONS * leaseDurationMillis * NANOS_IN_MILLI;
+        leases.forEach((id, lease) -> {
+            long returned;
+            boolean isIdle;
+            synchronized (lease) {
+                if (!lease.isExpired(nowNanos) || lease.isRenewing()) {
+                    return;
+                }
+                returned = lease.release();
+                isIdle = lease.isExpired(nowNanos - idleNanos);
+                if (isIdle) {
+                    lease.retire();
+                }
+            }
+            // Outside of the lease monitor, getLease locks the map before a lease
+            if (isIdle) {
+                leases.remove(id, lease);
+            }
+            if (returned > 0) {
+                returnPermits(id, lease.getLimit(), returned);
+            }
+        });
+    }
+
+    // One failed return does not stop the others, the permits left out refill with the bucket
+    private void returnPermits(String id, ClientRateLimitData limit, long returned) {
+        try {
+            executeLease(limit, returned, 0);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not return leased permits of limit {}", id, e);
+        }
+    }
+
+    @PreDestroy
+    public void returnAllLeases() {
+        leases.forEach((id, lease) -> {
+            long returned;
+            synchronized (lease) {
+                returned = lease.release();
+            }
+            if (returned > 0) {
+                returnPermits(id, lease.getLimit(), returned);
+            }
+        });
+        leases.clear();
+    }
+}
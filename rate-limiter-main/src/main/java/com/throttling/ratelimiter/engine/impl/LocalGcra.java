@@ -0,0 +1,92 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.GcraState;
+import com.throttling.ratelimiter.pojo.model.LimitState;
+import com.throttling.ratelimiter.util.TimeUnitConversionUtil;
+
+//Generic cell rate algorithm whose whole state is the theoretical arrival time of the next request.
+//A request passes when it arrives no earlier than arrivalTime - tolerance, and pushes arrivalTime by one emission interval
+//per permit. A reservation pushes it the same way, further ahead than the tolerance.
+public class LocalGcra implements LocalRateLimiter {
+
+    private static final AtomicLongFieldUpdater<LocalGcra> ARRIVAL_TIME =
+            AtomicLongFieldUpdater.newUpdater(LocalGcra.class, "arrivalTimeNanos");
+
+    private static final long NANOS_IN_MILLI = 1_000_000L;
+
+    private final long maxPermits;
+
+    private final long burst;
+
+    private final TimeUnit timeUnit;
+
+    private final long emissionIntervalNanos;
+
+    private final long toleranceNanos;
+
+    private volatile long arrivalTimeNanos;
+
+    public LocalGcra(ClientRateLimitData limit, long nowNanos) {
+        this.maxPermits = limit.getMaxPermits();
+        this.burst = limit.getBurst();
+        this.timeUnit = limit.getTimeUnit();
+        long windowNanos = TimeUnitConversionUtil.toMillis(timeUnit) * NANOS_IN_MILLI;
+        this.emissionIntervalNanos = Math.max(windowNanos / Math.max(maxPermits, 1), 1);
+        this.toleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.arrivalTimeNanos = nowNanos;
+    }
+
+    // The last of the permits is scheduled permits - 1 emission intervals after the first one
+    @Override
+    public long tryConsume(long nowNanos, long permits, long maxWaitNanos) {
+        if (permits > burst) {
+            return REJECTED;
+        }
+        while (true) {
+            long arrivalTime = arrivalTimeNanos;
+            long scheduled = Math.max(arrivalTime, nowNanos);
+            long waitNanos = scheduled + (permits - 1) * emissionIntervalNanos - toleranceNanos - nowNanos;
+            if (waitNanos > maxWaitNanos) {
+                return REJECTED;
+            }
+            if (ARRIVAL_TIME.compareAndSet(this, arrivalTime, scheduled + permits * emissionIntervalNanos)) {
+                return Math.max(waitNanos, 0);
+            }
+        }
+    }
+
+    @Override
+    public void refund(long permits) {
+        ARRIVAL_TIME.addAndGet(this, -permits * emissionIntervalNanos);
+    }
+
+    @Override
+    public long retryAfterNanos(long nowNanos, long permits) {
+        if (permits > burst) {
+            return 0;
+        }
+        return Math.max(Math.max(arrivalTimeNanos, nowNanos) + (permits - 1) * emissionIntervalNanos - toleranceNanos - nowNanos, 0);
+    }
+
+    @Override
+    public boolean isConfiguredFor(ClientRateLimitData limit) {
+        return limit.getAlgorithm() == RateLimitAlgorithm.GCRA && maxPermits == limit.getMaxPermits()
+                && burst == limit.getBurst() && timeUnit == limit.getTimeUnit();
+    }
+
+    @Override
+    public LimitState snapshot(long nowNanos, long nowMillis) {
+        return new GcraState(nowMillis + (arrivalTimeNanos - nowNanos) / (double) NANOS_IN_MILLI);
+    }
+
+    @Override
+    public void restore(LimitState state, long nowNanos, long nowMillis) {
+        double aheadMillis = ((GcraState) state).getTheoreticalArrivalTime() - nowMillis;
+        arrivalTimeNanos = nowNanos + Math.max((long) (aheadMillis * NANOS_IN_MILLI), 0);
+    }
+}
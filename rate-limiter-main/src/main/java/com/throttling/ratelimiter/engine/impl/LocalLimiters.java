@@ -0,0 +1,128 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import com.throttling.ratelimiter.cache.RateLimitPlan;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.LimitState;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+
+//In-JVM limiters keyed by limit id, used by LocalRateLimitEngine and by the Redis fallback
+public class LocalLimiters {
+
+    private static final long NANOS_IN_MILLI = 1_000_000L;
+
+    private final ConcurrentMap<String, LocalRateLimiter> limiters = new ConcurrentHashMap<>();
+
+    // Null unless the state is persisted, see LocalStateWriteBehind
+    private final LocalStateWriteBehind writeBehind;
+
+    // Limits whose state changed since the last drain, by limit id, with the limit last applied
+    private final ConcurrentMap<String, ClientRateLimitData> changedLimits = new ConcurrentHashMap<>();
+
+    public LocalLimiters() {
+        this(null);
+    }
+
+    LocalLimiters(LocalStateWriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public RateLimitDecision tryAcquire(List<ClientRateLimitData> applicableApiLimits) {
+        return tryAcquire(applicableApiLimits, 1, 0);
+    }
+
+    //Takes the permits from every limit or from none. A reservation waits for the slowest of the limits.
+    public RateLimitDecision tryAcquire(List<ClientRateLimitData> applicableApiLimits, long permits, long maxWaitMillis) {
+        if (applicableApiLimits.isEmpty()) {
+            return RateLimitDecision.noLimits();
+        }
+
+        long nowNanos = System.nanoTime();
+        long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        long waitNanos = 0;
+        int size = applicableApiLimits.size();
+
+        for (int i = 0; i < size; i++) {
+            ClientRateLimitData limit = applicableApiLimits.get(i);
+            LocalRateLimiter limiter = getLimiter(limit, nowNanos);
+            long limitWaitNanos = limiter.tryConsume(nowNanos, permits, maxWaitNanos);
+            if (limitWaitNanos == LocalRateLimiter.REJECTED) {
+                // All or nothing, give back permits taken from the previous limits. They are looked up again rather
+                // than remembered, the denied path is the only one paying for it.
+                for (int j = 0; j < i; j++) {
+                    getLimiter(applicableApiLimits.get(j), nowNanos).refund(permits);
+                }
+                return RateLimitPlan.denied(applicableApiLimits, i, ceilMillis(limiter.retryAfterNanos(nowNanos, permits)));
+            }
+            waitNanos = Math.max(waitNanos, limitWaitNanos);
+        }
+        if (writeBehind != null) {
+            // Replacing the value of a present key allocates nothing
+            for (int i = 0; i < size; i++) {
+                ClientRateLimitData limit = applicableApiLimits.get(i);
+                changedLimits.put(limit.getId(), limit);
+            }
+            writeBehind.onChanged(changedLimits.size());
+        }
+        return RateLimitPlan.allowed(applicableApiLimits, size - 1, ceilMillis(waitNanos));
+    }
+
+    private static long ceilMillis(long nanos) {
+        return (nanos + NANOS_IN_MILLI - 1) / NANOS_IN_MILLI;
+    }
+
+    private LocalRateLimiter getLimiter(ClientRateLimitData limit, long nowNanos) {
+        LocalRateLimiter limiter = limiters.get(limit.getId());
+        if (limiter != null && limiter.isConfiguredFor(limit)) {
+            return limiter;
+        }
+        // New or reconfigured limit, start over with full capacity. Persisted states were restored at startup.
+        LocalRateLimiter created = newLimiter(limit, nowNanos);
+        return limiters.compute(limit.getId(), (id, current) ->
+                current != null && current.isConfiguredFor(limit) ? current : created);
+    }
+
+    //Continues a limit from its persisted state, before requests use it
+    void restore(ClientRateLimitData limit, LimitState state) {
+        long nowNanos = System.nanoTime();
+        LocalRateLimiter limiter = newLimiter(limit, nowNanos);
+        limiter.restore(state, nowNanos, System.currentTimeMillis());
+        limiters.put(limit.getId(), limiter);
+    }
+
+    //Hands the current state of every limit changed since the last drain to the consumer. A limit reconfigured
+    //since its change is skipped, its new limiter is marked with its own next change.
+    void drainChanged(BiConsumer<ClientRateLimitData, LimitState> consumer) {
+        long nowNanos = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        for (String id : changedLimits.keySet()) {
+            // Removed before the snapshot, so that a change made in between is part of it or marked again
+            ClientRateLimitData limit = changedLimits.remove(id);
+            LocalRateLimiter limiter = limiters.get(id);
+            if (limit != null && limiter != null && limiter.isConfiguredFor(limit)) {
+                consumer.accept(limit, limiter.snapshot(nowNanos, nowMillis));
+            }
+        }
+    }
+
+    //Marks the limit changed again after its state could not be saved
+    void markChanged(ClientRateLimitData limit) {
+        changedLimits.putIfAbsent(limit.getId(), limit);
+    }
+
+    private static LocalRateLimiter newLimiter(ClientRateLimitData limit, long nowNanos) {
+        switch (limit.getAlgorithm()) {
+            case SLIDING_WINDOW:
+                return new LocalSlidingWindow(limit, nowNanos);
+            case GCRA:
+                return new LocalGcra(limit, nowNanos);
+            default:
+                return new LocalTokenBucket(limit, nowNanos);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.throttling.ratelimiter.engine.RateLimitEngine;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+import com.throttling.ratelimiter.service.impl.ClientConfigServiceImpl;
+
+import reactor.core.publisher.Mono;
+
+//In-JVM token buckets, GCRA and sliding window counters updated with CAS, for single node and sidecar deployments.
+//The state can be persisted in the background, see LocalStateWriteBehind.
+@Component
+@ConditionalOnProperty(name = "ratelimiter.engine", havingValue = "local")
+public class LocalRateLimitEngine implements RateLimitEngine {
+
+    @Autowired
+    private ClientConfigServiceImpl clientConfigServiceImpl;
+
+    @Autowired
+    private LocalStateWriteBehind localStateWriteBehind;
+
+    private LocalLimiters localLimiters;
+
+    @PostConstruct
+    public void init() {
+        localLimiters = localStateWriteBehind.createLimiters();
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(String clientId, String methodName, String apiName, long permits, long maxWaitMillis) {
+        return localLimiters.tryAcquire(clientConfigServiceImpl.fetchApplicableRateLimits(clientId, methodName, apiName),
+                permits, maxWaitMillis);
+    }
+
+    //Nothing to wait for once the limits are known
+    @Override
+    public Mono<RateLimitDecision> tryAcquireReactive(String clientId, String methodName, String apiName, long permits,
+            long maxWaitMillis) {
+        return clientConfigServiceImpl.fetchApplicableRateLimitsReactive(clientId, methodName, apiName)
+                .map(limits -> localLimiters.tryAcquire(limits, permits, maxWaitMillis));
+    }
+}
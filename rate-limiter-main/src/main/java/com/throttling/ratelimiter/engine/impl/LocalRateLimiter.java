@@ -0,0 +1,42 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.LimitState;
+
+//In-JVM state of one limit used by LocalRateLimitEngine
+public interface LocalRateLimiter {
+
+  long REJECTED = -1;
+
+  //Takes the permits now, or reserves them when they are available within maxWaitNanos. Returns the nanoseconds to
+  //wait before using them, 0 when they are available now, or REJECTED when nothing was taken.
+  long tryConsume(long nowNanos, long permits, long maxWaitNanos);
+
+  default boolean tryConsume(long nowNanos) {
+    return tryConsume(nowNanos, 1, 0) == 0;
+  }
+
+  //gives back permits taken by tryConsume
+  void refund(long permits);
+
+  default void refund() {
+    refund(1);
+  }
+
+  //how long a rejected caller should wait for the permits, 0 when unknown or never
+  default long retryAfterNanos(long nowNanos, long permits) {
+    return 0;
+  }
+
+  default long retryAfterNanos(long nowNanos) {
+    return retryAfterNanos(nowNanos, 1);
+  }
+
+  boolean isConfiguredFor(ClientRateLimitData limit);
+
+  //state to persist, in the format of RateLimitStateRepository with timestamps in epoch milliseconds
+  LimitState snapshot(long nowNanos, long nowMillis);
+
+  //continues from a state taken by snapshot, possibly in an earlier run of the service
+  void restore(LimitState state, long nowNanos, long nowMillis);
+}
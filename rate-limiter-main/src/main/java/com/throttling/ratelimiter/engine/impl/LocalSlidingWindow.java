@@ -0,0 +1,137 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.LimitState;
+import com.throttling.ratelimiter.pojo.model.SlidingWindowState;
+import com.throttling.ratelimiter.util.TimeUnitConversionUtil;
+
+//Lock-free sliding window counter: the counts of the current and previous fixed windows, the previous one weighted
+//by the part of it still covered by the sliding window. Window start and counts are one immutable Window replaced by
+//compare-and-set. Requests are counted when they are made, so permits cannot be reserved for later.
+public class LocalSlidingWindow implements LocalRateLimiter {
+
+    private static final AtomicReferenceFieldUpdater<LocalSlidingWindow, Window> WINDOW =
+            AtomicReferenceFieldUpdater.newUpdater(LocalSlidingWindow.class, Window.class, "window");
+
+    private static final long NANOS_IN_MILLI = 1_000_000L;
+
+    private final long maxPermits;
+
+    private final TimeUnit timeUnit;
+
+    private final long windowNanos;
+
+    private volatile Window window;
+
+    private static final class Window {
+
+        private final long start;
+
+        private final long currentCount;
+
+        private final long previousCount;
+
+        private Window(long start, long currentCount, long previousCount) {
+            this.start = start;
+            this.currentCount = currentCount;
+            this.previousCount = previousCount;
+        }
+    }
+
+    public LocalSlidingWindow(ClientRateLimitData limit, long nowNanos) {
+        this.maxPermits = limit.getMaxPermits();
+        this.timeUnit = limit.getTimeUnit();
+        this.windowNanos = TimeUnitConversionUtil.toMillis(timeUnit) * NANOS_IN_MILLI;
+        this.window = new Window(nowNanos - Math.floorMod(nowNanos, windowNanos), 0, 0);
+    }
+
+    @Override
+    public long tryConsume(long nowNanos, long permits, long maxWaitNanos) {
+        while (true) {
+            Window current = window;
+            Window rolled = roll(current, nowNanos);
+            // A caller that read the clock before another one rolled the window over is counted in the current window
+            long elapsed = Math.max(nowNanos - rolled.start, 0);
+            double previousWeight = (windowNanos - elapsed) / (double) windowNanos;
+            if (rolled.currentCount + rolled.previousCount * previousWeight + permits > maxPermits) {
+                return REJECTED;
+            }
+            if (WINDOW.compareAndSet(this, current,
+                    new Window(rolled.start, rolled.currentCount + permits, rolled.previousCount))) {
+                return 0;
+            }
+        }
+    }
+
+    @Override
+    public void refund(long permits) {
+        while (true) {
+            Window current = window;
+            long fromCurrent = Math.min(permits, current.currentCount);
+            // The window rolled over since the permits were taken
+            Window refunded = new Window(current.start, current.currentCount - fromCurrent,
+                    Math.max(current.previousCount - (permits - fromCurrent), 0));
+            if (WINDOW.compareAndSet(this, current, refunded)) {
+                return;
+            }
+        }
+    }
+
+    // The weight of the previous window falls until the permits fit, or the current window has to become the
+    // previous one first
+    @Override
+    public long retryAfterNanos(long nowNanos, long permits) {
+        if (permits > maxPermits) {
+            return 0;
+        }
+        Window rolled = roll(window, nowNanos);
+        long elapsed = Math.max(nowNanos - rolled.start, 0);
+        long slack = maxPermits - rolled.currentCount - permits;
+        double wait = slack >= 0 ? windowNanos - slack * (double) windowNanos / rolled.previousCount - elapsed
+                : 2.0 * windowNanos - (maxPermits - permits) * (double) windowNanos / rolled.currentCount - elapsed;
+        return Math.max((long) Math.ceil(wait), 0);
+    }
+
+    private Window roll(Window current, long nowNanos) {
+        long start = nowNanos - Math.floorMod(nowNanos, windowNanos);
+        if (start <= current.start) {
+            return current;
+        }
+        // Only the window right before the current one still counts
+        return new Window(start, 0, start - current.start == windowNanos ? current.currentCount : 0);
+    }
+
+    @Override
+    public boolean isConfiguredFor(ClientRateLimitData limit) {
+        return limit.getAlgorithm() == RateLimitAlgorithm.SLIDING_WINDOW
+                && maxPermits == limit.getMaxPermits() && timeUnit == limit.getTimeUnit();
+    }
+
+    // The window start is converted to epoch milliseconds, it is a multiple of the window length on the nanoTime clock only
+    @Override
+    public LimitState snapshot(long nowNanos, long nowMillis) {
+        Window current = window;
+        return new SlidingWindowState(current.currentCount, current.previousCount,
+                nowMillis - (nowNanos - current.start) / NANOS_IN_MILLI);
+    }
+
+    // Local windows are not aligned with the saved ones, the saved counts go to the window that is current now
+    @Override
+    public void restore(LimitState state, long nowNanos, long nowMillis) {
+        SlidingWindowState saved = (SlidingWindowState) state;
+        long windowMillis = windowNanos / NANOS_IN_MILLI;
+        long elapsedMillis = nowMillis - saved.getWindowStart();
+        long start = nowNanos - Math.floorMod(nowNanos, windowNanos);
+        if (elapsedMillis < windowMillis) {
+            window = new Window(start, saved.getCurrentCount(), saved.getPreviousCount());
+        } else if (elapsedMillis < 2 * windowMillis) {
+            window = new Window(start, 0, saved.getCurrentCount());
+        } else {
+            window = new Window(start, window.currentCount, window.previousCount);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.LimitState;
+import com.throttling.ratelimiter.repository.RateLimitConfigScanRepository;
+import com.throttling.ratelimiter.repository.RateLimitStateRepository;
+
+//Write-behind persistence of the local engine's state. Requests only update memory and mark their limits changed; a
+//background thread saves the latest state of the changed limits to the Redis state keys every flush-interval-ms, or
+//as soon as max-batch-size limits are waiting, and once more on shutdown. The saved states are loaded before the
+//engine takes requests, so a restart keeps the limits used up except for the changes of the last interval and
+//requests never wait on Redis. For single node deployments, nodes sharing the Redis keys would overwrite each
+//other's state.
+@Component
+@ConditionalOnProperty(name = "ratelimiter.engine", havingValue = "local")
+public class LocalStateWriteBehind {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalStateWriteBehind.class);
+
+    @Autowired
+    private RateLimitStateRepository rateLimitStateRepository;
+
+    @Autowired
+    private RateLimitConfigScanRepository rateLimitConfigScanRepository;
+
+    @Value("${ratelimiter.local.write-behind.enabled:false}")
+    private boolean isEnabled;
+
+    @Value("${ratelimiter.local.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMillis;
+
+    @Value("${ratelimiter.local.write-behind.max-batch-size:1000}")
+    private int maxBatchSize;
+
+    private LocalLimiters localLimiters;
+
+    private Thread flushThread;
+
+    private volatile boolean isRunning;
+
+    //Limiters of the local engine, persisted when write-behind is enabled
+    public LocalLimiters createLimiters() {
+        if (!isEnabled) {
+            return new LocalLimiters();
+        }
+        localLimiters = new LocalLimiters(this);
+        restoreSavedStates();
+        isRunning = true;
+        flushThread = new Thread(this::runFlushes, "local-state-write-behind");
+        flushThread.setDaemon(true);
+        flushThread.start();
+        return localLimiters;
+    }
+
+    //Size trigger, called by LocalLimiters after each change
+    void onChanged(int changedCount) {
+        if (changedCount >= maxBatchSize) {
+            LockSupport.unpark(flushThread);
+        }
+    }
+
+    //Walks every configured limit and reads the saved states of each max-batch-size of them with one pipeline.
+    //Limits without a saved state, or all of them when Redis cannot be read, start with full capacity.
+    private void restoreSavedStates() {
+        AtomicLong restored = new AtomicLong();
+        try {
+            rateLimitConfigScanRepository.scan(null, maxBatchSize, limits -> {
+                List<LimitState> states = rateLimitStateRepository.findAll(limits);
+                for (int i = 0; i < limits.size(); i++) {
+                    if (states.get(i) != null) {
+                        localLimiters.restore(limits.get(i), states.get(i));
+                        restored.incrementAndGet();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not load the saved limit states, limits not restored yet start with full capacity", e);
+        }
+        LOGGER.info("Restored the saved state of {} limits", restored.get());
+    }
+
+    private void runFlushes() {
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        while (isRunning) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            flush();
+        }
+    }
+
+    private void flush() {
+        List<ClientRateLimitData> limits = new ArrayList<>();
+        List<LimitState> states = new ArrayList<>();
+        localLimiters.drainChanged((limit, state) -> {
+            limits.add(limit);
+            states.add(state);
+        });
+
+        for (int from = 0; from < limits.size(); from += maxBatchSize) {
+            int to = Math.min(from + maxBatchSize, limits.size());
+            List<ClientRateLimitData> batch = limits.subList(from, to);
+            try {
+                rateLimitStateRepository.saveAll(batch, states.subList(from, to));
+            } catch (RuntimeException e) {
+                // Saved with the next flush, with whatever state the limits have by then
+                LOGGER.warn("Could not save the state of {} limits, retrying with the next flush", batch.size(), e);
+                batch.forEach(localLimiters::markChanged);
+            }
+        }
+        if (!limits.isEmpty()) {
+            LOGGER.debug("Saved the state of {} limits", limits.size());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flushThread == null) {
+            return;
+        }
+        isRunning = false;
+        LockSupport.unpark(flushThread);
+        flushThread.join(TimeUnit.SECONDS.toMillis(5));
+        if (flushThread.isAlive()) {
+            // Flushing concurrently would save older states over newer ones
+            LOGGER.warn("Local limit state flush still running on shutdown, latest changes may not be saved");
+            return;
+        }
+        // Changes made since the last flush of the thread
+        flush();
+        LOGGER.info("Local limit state saved on shutdown");
+    }
+}
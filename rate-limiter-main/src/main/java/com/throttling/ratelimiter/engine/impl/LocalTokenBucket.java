@@ -0,0 +1,100 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.BucketState;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.LimitState;
+import com.throttling.ratelimiter.util.TimeUnitConversionUtil;
+
+//Lock-free token bucket whose whole state is the instant at which it held zero permits.
+//Available permits at time t are min(maxPermits, (t - zeroTimeNanos) / nanosPerPermit), negative while the
+//bucket is in debt for reserved permits.
+public class LocalTokenBucket implements LocalRateLimiter {
+
+    private static final AtomicLongFieldUpdater<LocalTokenBucket> ZERO_TIME =
+            AtomicLongFieldUpdater.newUpdater(LocalTokenBucket.class, "zeroTimeNanos");
+
+    private static final long NANOS_IN_MILLI = 1_000_000L;
+
+    private final long maxPermits;
+
+    private final TimeUnit timeUnit;
+
+    private final long nanosPerPermit;
+
+    private final long capacityNanos;
+
+    private volatile long zeroTimeNanos;
+
+    public LocalTokenBucket(ClientRateLimitData limit, long nowNanos) {
+        this.maxPermits = limit.getMaxPermits();
+        this.timeUnit = limit.getTimeUnit();
+        long windowNanos = TimeUnitConversionUtil.toMillis(timeUnit) * NANOS_IN_MILLI;
+        this.nanosPerPermit = Math.max(windowNanos / Math.max(maxPermits, 1), 1);
+        this.capacityNanos = nanosPerPermit * maxPermits;
+        // Start with a full bucket
+        this.zeroTimeNanos = nowNanos - capacityNanos;
+    }
+
+    @Override
+    public long tryConsume(long nowNanos, long permits, long maxWaitNanos) {
+        if (permits > maxPermits) {
+            return REJECTED;
+        }
+        while (true) {
+            long zeroTime = zeroTimeNanos;
+            // Permits above capacity are never accumulated
+            long next = Math.max(zeroTime, nowNanos - capacityNanos) + permits * nanosPerPermit;
+            long waitNanos = next - nowNanos;
+            if (waitNanos > maxWaitNanos) {
+                return REJECTED;
+            }
+            if (ZERO_TIME.compareAndSet(this, zeroTime, next)) {
+                return Math.max(waitNanos, 0);
+            }
+        }
+    }
+
+    @Override
+    public void refund(long permits) {
+        ZERO_TIME.addAndGet(this, -permits * nanosPerPermit);
+    }
+
+    @Override
+    public long retryAfterNanos(long nowNanos, long permits) {
+        if (permits > maxPermits) {
+            return 0;
+        }
+        return Math.max(Math.max(zeroTimeNanos, nowNanos - capacityNanos) + permits * nanosPerPermit - nowNanos, 0);
+    }
+
+    @Override
+    public boolean isConfiguredFor(ClientRateLimitData limit) {
+        return limit.getAlgorithm() == RateLimitAlgorithm.TOKEN_BUCKET && maxPermits == limit.getMaxPermits() && timeUnit == limit.getTimeUnit();
+    }
+
+    // The refill progress towards the next permit becomes refill credit, in 1/windowMillis of a permit
+    @Override
+    public LimitState snapshot(long nowNanos, long nowMillis) {
+        long availableNanos = Math.min(nowNanos - zeroTimeNanos, capacityNanos);
+        long available = Math.floorDiv(availableNanos, nanosPerPermit);
+        if (available >= maxPermits) {
+            return new BucketState(maxPermits, nowMillis, 0);
+        }
+        long credit = Math.min(Math.floorMod(availableNanos, nanosPerPermit) * maxPermits / NANOS_IN_MILLI,
+                TimeUnitConversionUtil.toMillis(timeUnit) - 1);
+        return new BucketState(available, nowMillis, credit);
+    }
+
+    @Override
+    public void restore(LimitState state, long nowNanos, long nowMillis) {
+        BucketState bucket = (BucketState) state;
+        long elapsedNanos = Math.max(nowMillis - bucket.getLastRequestTimeStamp(), 0) * NANOS_IN_MILLI;
+        long creditNanos = bucket.getRefillCredit() * NANOS_IN_MILLI / Math.max(maxPermits, 1);
+        long availableNanos = Math.min(bucket.getAvailablePermits() * nanosPerPermit + creditNanos + elapsedNanos, capacityNanos);
+        zeroTimeNanos = nowNanos - availableNanos;
+    }
+}
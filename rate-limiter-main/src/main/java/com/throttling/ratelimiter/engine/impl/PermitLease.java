@@ -0,0 +1,117 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+
+//Token bucket permits reserved by this node for one limit, served from memory until used up or expired.
+//The size of the next lease follows an exponentially weighted moving average of the observed rate.
+//Callers synchronize on the lease.
+public class PermitLease {
+
+    private final ClientRateLimitData limit;
+
+    private long granted;
+
+    private long remaining;
+
+    private long grantedAtNanos;
+
+    private long expiresAtNanos;
+
+    private double ratePerNano = -1; // no observation yet
+
+    private long retryAfterMillis; // wait reported by the bucket when the last renewal granted nothing
+
+    private boolean renewing; // a renewal is waiting for Redis, outside of the monitor
+
+    private volatile boolean retired;
+
+    public PermitLease(ClientRateLimitData limit) {
+        this.limit = limit;
+    }
+
+    public boolean tryTake(long nowNanos) {
+        if (remaining > 0 && nowNanos < expiresAtNanos) {
+            remaining--;
+            return true;
+        }
+        return false;
+    }
+
+    //gives back a permit taken by tryTake
+    public void giveBack() {
+        remaining++;
+    }
+
+    //permits to return to the bucket before renewing, the lease is empty afterwards
+    public long release() {
+        long unused = remaining;
+        remaining = 0;
+        return unused;
+    }
+
+    public boolean isExpired(long nowNanos) {
+        return nowNanos >= expiresAtNanos;
+    }
+
+    public boolean hasRemaining() {
+        return remaining > 0;
+    }
+
+    //Rate seen over the previous lease times the lease duration, within [1, maxLeaseSize]
+    public long nextLeaseSize(long nowNanos, long durationNanos, double alpha, long maxLeaseSize) {
+        if (grantedAtNanos != 0 && nowNanos > grantedAtNanos) {
+            double observedRate = (granted - remaining) / (double) (nowNanos - grantedAtNanos);
+            ratePerNano = ratePerNano < 0 ? observedRate : alpha * observedRate + (1 - alpha) * ratePerNano;
+        }
+        if (ratePerNano <= 0) {
+            return 1;
+        }
+        return Math.max(1, Math.min((long) Math.ceil(ratePerNano * durationNanos), maxLeaseSize));
+    }
+
+    public void renew(long grantedPermits, long nowNanos, long durationNanos) {
+        granted = grantedPermits;
+        remaining = grantedPermits;
+        grantedAtNanos = nowNanos;
+        expiresAtNanos = nowNanos + durationNanos;
+    }
+
+    //Single flight: the caller that starts a renewal ends it, whatever its outcome
+    public void startRenewal() {
+        renewing = true;
+    }
+
+    public void endRenewal() {
+        renewing = false;
+    }
+
+    public boolean isRenewing() {
+        return renewing;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    public void setRetryAfterMillis(long retryAfterMillis) {
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    //no longer reachable from the engine, callers holding it look the lease up again
+    public void retire() {
+        retired = true;
+    }
+
+    public boolean isRetired() {
+        return retired;
+    }
+
+    public ClientRateLimitData getLimit() {
+        return limit;
+    }
+
+    public boolean isConfiguredFor(ClientRateLimitData other) {
+        return limit.getAlgorithm() == other.getAlgorithm() && limit.getMaxPermits() == other.getMaxPermits()
+                && limit.getTimeUnit() == other.getTimeUnit();
+    }
+}
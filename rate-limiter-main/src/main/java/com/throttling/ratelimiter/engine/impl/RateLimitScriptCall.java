@@ -0,0 +1,104 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import com.throttling.ratelimiter.cache.RateLimitPlan;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+import com.throttling.ratelimiter.util.TimeUnitConversionUtil;
+
+//Keys and arguments of one rate limit script invocation covering several requests of the same client
+public class RateLimitScriptCall {
+
+    private final BiFunction<List<ClientRateLimitData>, Integer, String> stateKeyBuilder;
+
+    private final List<String> keys = new ArrayList<>();
+
+    private final List<ClientRateLimitData> limits = new ArrayList<>();
+
+    // List and index each limit was first added with, to reuse the decisions of its plan
+    private final List<List<ClientRateLimitData>> limitSources = new ArrayList<>();
+
+    private final List<Integer> limitSourceIndexes = new ArrayList<>();
+
+    private final Map<String, Integer> limitIndexes = new HashMap<>();
+
+    private final List<String> requestArgs = new ArrayList<>();
+
+    private final List<Integer> positions = new ArrayList<>();
+
+    private final List<List<ClientRateLimitData>> requestLimits = new ArrayList<>();
+
+    public RateLimitScriptCall(BiFunction<List<ClientRateLimitData>, Integer, String> stateKeyBuilder) {
+        this.stateKeyBuilder = stateKeyBuilder;
+    }
+
+    //position identifies the request in the caller's batch, permits are taken from each limit and reserved when
+    //available within maxWaitMillis
+    public void addRequest(int position, List<ClientRateLimitData> applicableLimits, long permits, long maxWaitMillis) {
+        positions.add(position);
+        requestLimits.add(applicableLimits);
+        requestArgs.add(String.valueOf(applicableLimits.size()));
+        requestArgs.add(String.valueOf(permits));
+        requestArgs.add(String.valueOf(maxWaitMillis));
+        for (int i = 0; i < applicableLimits.size(); i++) {
+            ClientRateLimitData limit = applicableLimits.get(i);
+            Integer index = limitIndexes.get(limit.getId());
+            if (index == null) {
+                keys.add(stateKeyBuilder.apply(applicableLimits, i));
+                limits.add(limit);
+                limitSources.add(applicableLimits);
+                limitSourceIndexes.add(i);
+                index = keys.size();
+                limitIndexes.put(limit.getId(), index);
+            }
+            requestArgs.add(String.valueOf(index));
+        }
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public String[] buildArgs(long currentTimestamp) {
+        List<String> args = new ArrayList<>(2 + 4 * limits.size() + requestArgs.size());
+        args.add(String.valueOf(currentTimestamp));
+        for (ClientRateLimitData limit : limits) {
+            args.add(String.valueOf(limit.getMaxPermits()));
+            args.add(String.valueOf(TimeUnitConversionUtil.toMillis(limit.getTimeUnit())));
+            args.add(limit.getAlgorithm().name());
+            args.add(String.valueOf(limit.getBurst()));
+        }
+        args.add(String.valueOf(positions.size()));
+        args.addAll(requestArgs);
+        return args.toArray(new String[0]);
+    }
+
+    //keys followed by arguments, as expected by EVALSHA on a raw connection
+    public String[] buildKeysAndArgs(long currentTimestamp) {
+        String[] args = buildArgs(currentTimestamp);
+        String[] keysAndArgs = keys.toArray(new String[keys.size() + args.length]);
+        System.arraycopy(args, 0, keysAndArgs, keys.size(), args.length);
+        return keysAndArgs;
+    }
+
+    public List<Integer> getPositions() {
+        return positions;
+    }
+
+    //maps the script result of the request-th request (0 or index of the denying key, wait) to a decision
+    public RateLimitDecision toDecision(int request, List<?> results) {
+        long deniedIndex = (Long) results.get(2 * request);
+        long waitMillis = (Long) results.get(2 * request + 1);
+        if (deniedIndex == 0) {
+            List<ClientRateLimitData> applicableLimits = requestLimits.get(request);
+            return RateLimitPlan.allowed(applicableLimits, applicableLimits.size() - 1, waitMillis);
+        }
+        int limit = (int) deniedIndex - 1;
+        return RateLimitPlan.denied(limitSources.get(limit), limitSourceIndexes.get(limit), waitMillis);
+    }
+}
@@ -0,0 +1,61 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+//Timestamps of the Redis engines, taken from the monotonic clock of the node anchored on the Redis server time, so
+//that every node refills the shared buckets from the same clock whatever the wall clock of its host says. The anchor
+//is the middle of a TIME round trip and is renewed periodically; a renewal may step the clock by the drift gathered
+//since the previous one, the scripts never refill for a negative elapsed time. With source=node, or until Redis
+//answers, the anchor is the wall clock of the node.
+@Component
+public class RedisClock {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisClock.class);
+
+    private static final long NANOS_IN_MILLI = 1_000_000L;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${ratelimiter.clock.source:redis}")
+    private String source;
+
+    // Difference between the anchored time and System.nanoTime(), in nanoseconds
+    private volatile long offsetNanos = System.currentTimeMillis() * NANOS_IN_MILLI - System.nanoTime();
+
+    @PostConstruct
+    public void init() {
+        synchronize();
+    }
+
+    public long currentTimeMillis() {
+        return (System.nanoTime() + offsetNanos) / NANOS_IN_MILLI;
+    }
+
+    @Scheduled(initialDelayString = "${ratelimiter.clock.sync-interval-ms:60000}",
+            fixedDelayString = "${ratelimiter.clock.sync-interval-ms:60000}")
+    public void synchronize() {
+        if (!"redis".equals(source)) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            Long serverMillis = stringRedisTemplate.execute((RedisCallback<Long>) connection -> connection.time());
+            long end = System.nanoTime();
+            if (serverMillis != null) {
+                offsetNanos = serverMillis * NANOS_IN_MILLI - (start + (end - start) / 2);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not read the Redis server time, keeping the previous clock anchor", e);
+        }
+    }
+}
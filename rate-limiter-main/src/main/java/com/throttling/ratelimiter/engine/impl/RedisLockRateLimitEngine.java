@@ -0,0 +1,333 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Component;
+
+import com.throttling.ratelimiter.cache.RateLimitPlan;
+import com.throttling.ratelimiter.engine.RateLimitEngine;
+import com.throttling.ratelimiter.enums.DecisionOutcome;
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
+import com.throttling.ratelimiter.pojo.model.BucketState;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.GcraState;
+import com.throttling.ratelimiter.pojo.model.LimitState;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+import com.throttling.ratelimiter.pojo.model.SlidingWindowState;
+import com.throttling.ratelimiter.pojo.request.ClientApiRequest;
+import com.throttling.ratelimiter.repository.RateLimitStateRepository;
+import com.throttling.ratelimiter.service.ClientLockService;
+import com.throttling.ratelimiter.service.impl.ClientConfigServiceImpl;
+import com.throttling.ratelimiter.sharding.LimitShardRouter;
+import com.throttling.ratelimiter.util.TimeUnitConversionUtil;
+import com.throttling.ratelimiter.util.TokenBucketRefillUtil;
+
+//Token bucket, sliding window counter and GCRA evaluated in the JVM under a per-client distributed lock, bucket state read from and written to Redis.
+//A request whose lock is not acquired within ratelimiter.lock.wait-ms is denied, Redis answering means the limit is
+//still enforced there and a local decision would admit requests on top of it.
+@Component
+@ConditionalOnProperty(name = "ratelimiter.engine", havingValue = "redis-lock")
+public class RedisLockRateLimitEngine implements RateLimitEngine {
+
+    @Autowired
+    private ClientLockService clientLockService;
+
+    @Autowired
+    private ClientConfigServiceImpl clientConfigServiceImpl;
+
+    @Autowired
+    private RateLimitStateRepository rateLimitStateRepository;
+
+    @Autowired
+    private LimitShardRouter limitShardRouter;
+
+    @Autowired
+    private RedisClock redisClock;
+
+    @Value("${ratelimiter.lock.wait-ms:100}")
+    private long lockWaitMillis;
+
+    @Override
+    public RateLimitDecision tryAcquire(String clientId, String methodName, String apiName, long permits, long maxWaitMillis) {
+        if (limitShardRouter.isSharded(clientId)) {
+            return tryAcquireSharded(clientId, methodName, apiName, permits, maxWaitMillis);
+        }
+
+        // Acquire the lock for atomic operations
+        if (!tryLock(clientId)) {
+            return RateLimitDecision.lockBusy(lockWaitMillis);
+        }
+
+        try {
+            // Fetch and validate applicable limits
+            List<ClientRateLimitData> applicableApiLimits = clientConfigServiceImpl.fetchApplicableRateLimits(clientId, methodName, apiName);
+
+            // Handle empty rate limits case
+            if (applicableApiLimits.isEmpty()) {
+                return RateLimitDecision.noLimits();
+            }
+            return consume(applicableApiLimits, permits, maxWaitMillis);
+
+        } finally {
+            // Release the lock only if it was acquired
+            clientLockService.releaseLock(clientId);
+        }
+    }
+
+    //Sub-limits of a shard are locked one by one instead of the whole client, other shards are tried when one is empty
+    private RateLimitDecision tryAcquireSharded(String clientId, String methodName, String apiName, long permits, long maxWaitMillis) {
+        List<ClientRateLimitData> applicableApiLimits = clientConfigServiceImpl.fetchApplicableRateLimits(clientId, methodName, apiName);
+        if (applicableApiLimits.isEmpty()) {
+            return RateLimitDecision.noLimits();
+        }
+
+        int shard = limitShardRouter.pickShard();
+        RateLimitDecision decision;
+        int probe = 0;
+        do {
+            List<ClientRateLimitData> shardLimits = limitShardRouter.forShard(applicableApiLimits, shard + probe);
+            List<String> lockNames = shardLimits.stream().map(ClientRateLimitData::getId).collect(Collectors.toList());
+            // A busy shard is skipped like an empty one
+            if (!tryLocks(lockNames)) {
+                decision = RateLimitDecision.lockBusy(lockWaitMillis);
+                continue;
+            }
+            try {
+                decision = consume(shardLimits, permits, maxWaitMillis);
+            } finally {
+                clientLockService.releaseLocks(lockNames);
+            }
+        } while (decision.getOutcome() == DecisionOutcome.DENIED && probe++ < limitShardRouter.getProbes());
+        return decision;
+    }
+
+    @Override
+    public boolean supportsGroupCommit() {
+        return true;
+    }
+
+    //Requests of the same client are evaluated together under one lock acquisition, against one read of the state of
+    //all their limits, and the states they changed are written back at once
+    @Override
+    public List<RateLimitDecision> tryAcquireAll(List<ClientApiRequest> clientApiRequests) {
+        RateLimitDecision[] decisions = new RateLimitDecision[clientApiRequests.size()];
+        Map<String, List<Integer>> clientPositions = new LinkedHashMap<>();
+        for (int i = 0; i < clientApiRequests.size(); i++) {
+            clientPositions.computeIfAbsent(clientApiRequests.get(i).getClientId(), clientId -> new ArrayList<>()).add(i);
+        }
+
+        clientPositions.forEach((clientId, positions) -> {
+            List<ClientApiRequest> requests = positions.stream().map(clientApiRequests::get).collect(Collectors.toList());
+            List<RateLimitDecision> clientDecisions = positions.size() == 1 || limitShardRouter.isSharded(clientId)
+                    ? RateLimitEngine.super.tryAcquireAll(requests) : tryAcquireClient(clientId, requests);
+            for (int i = 0; i < positions.size(); i++) {
+                decisions[positions.get(i)] = clientDecisions.get(i);
+            }
+        });
+        return Arrays.asList(decisions);
+    }
+
+    private List<RateLimitDecision> tryAcquireClient(String clientId, List<ClientApiRequest> requests) {
+        if (!tryLock(clientId)) {
+            return Collections.nCopies(requests.size(), RateLimitDecision.lockBusy(lockWaitMillis));
+        }
+        try {
+            List<List<ClientRateLimitData>> requestLimits = new ArrayList<>(requests.size());
+            Map<String, ClientRateLimitData> clientLimits = new LinkedHashMap<>();
+            for (ClientApiRequest request : requests) {
+                List<ClientRateLimitData> applicableApiLimits = clientConfigServiceImpl.fetchApplicableRateLimits(clientId,
+                        request.getMethodName().name(), request.getApiName());
+                requestLimits.add(applicableApiLimits);
+                applicableApiLimits.forEach(limit -> clientLimits.putIfAbsent(limit.getId(), limit));
+            }
+
+            Map<String, LimitState> states = findStates(new ArrayList<>(clientLimits.values()));
+            Set<String> updatedIds = new LinkedHashSet<>();
+            long currentTimestamp = redisClock.currentTimeMillis();
+            List<RateLimitDecision> decisions = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                List<ClientRateLimitData> applicableApiLimits = requestLimits.get(i);
+                decisions.add(applicableApiLimits.isEmpty() ? RateLimitDecision.noLimits()
+                        : evaluate(applicableApiLimits, states, updatedIds, currentTimestamp, requests.get(i).getCost(),
+                                requests.get(i).getMaxWaitMillis()));
+            }
+            saveStates(updatedIds.stream().map(clientLimits::get).collect(Collectors.toList()), states);
+            return decisions;
+        } finally {
+            clientLockService.releaseLock(clientId);
+        }
+    }
+
+    private boolean tryLock(String clientId) {
+        try {
+            clientLockService.acquireLock(clientId);
+            return true;
+        } catch (CannotAcquireLockException e) {
+            return false;
+        }
+    }
+
+    private boolean tryLocks(List<String> lockNames) {
+        try {
+            clientLockService.acquireLocks(lockNames);
+            return true;
+        } catch (CannotAcquireLockException e) {
+            return false;
+        }
+    }
+
+    //Takes the permits from every limit or from none of them, the caller holds the lock of the limits
+    private RateLimitDecision consume(List<ClientRateLimitData> applicableApiLimits, long permits, long maxWaitMillis) {
+        Map<String, LimitState> states = findStates(applicableApiLimits);
+        Set<String> updatedIds = new LinkedHashSet<>();
+        RateLimitDecision decision = evaluate(applicableApiLimits, states, updatedIds, redisClock.currentTimeMillis(), permits,
+                maxWaitMillis);
+        if (decision.getOutcome() == DecisionOutcome.ALLOWED) {
+            saveStates(applicableApiLimits, states);
+        }
+        return decision;
+    }
+
+    private Map<String, LimitState> findStates(List<ClientRateLimitData> rateLimits) {
+        List<LimitState> states = rateLimitStateRepository.findAll(rateLimits);
+        Map<String, LimitState> statesById = new HashMap<>();
+        for (int i = 0; i < rateLimits.size(); i++) {
+            statesById.put(rateLimits.get(i).getId(), states.get(i));
+        }
+        return statesById;
+    }
+
+    // The limit configuration is left untouched
+    private void saveStates(List<ClientRateLimitData> rateLimits, Map<String, LimitState> states) {
+        if (rateLimits.isEmpty()) {
+            return;
+        }
+        rateLimitStateRepository.saveAll(rateLimits, rateLimits.stream().map(limit -> states.get(limit.getId())).collect(Collectors.toList()));
+    }
+
+    //Evaluates a request against the states in memory, which are only changed (and the limit ids added to updatedIds)
+    //when every limit allows it. Permits available within maxWaitMillis are reserved, except on sliding windows.
+    private RateLimitDecision evaluate(List<ClientRateLimitData> applicableApiLimits, Map<String, LimitState> states,
+            Set<String> updatedIds, long currentTimestamp, long permits, long maxWaitMillis) {
+        List<LimitState> updatedStates = new ArrayList<>(applicableApiLimits.size());
+        long waitMillis = 0;
+
+        // Process rate limits
+        for (int i = 0; i < applicableApiLimits.size(); i++) {
+            ClientRateLimitData clientApiLimit = applicableApiLimits.get(i);
+            LimitState state = states.get(clientApiLimit.getId());
+            LimitState updatedState;
+            long limitWaitMillis;
+            switch (clientApiLimit.getAlgorithm()) {
+                case SLIDING_WINDOW:
+                    SlidingWindowState window = currentWindow(clientApiLimit, (SlidingWindowState) state, currentTimestamp);
+                    limitWaitMillis = slidingWindowWait(clientApiLimit, window, currentTimestamp, permits);
+                    updatedState = new SlidingWindowState(window.getCurrentCount() + permits, window.getPreviousCount(), window.getWindowStart());
+                    break;
+                case GCRA:
+                    double emissionInterval = gcraEmissionInterval(clientApiLimit);
+                    double arrivalTime = state == null ? currentTimestamp
+                            : Math.max(((GcraState) state).getTheoreticalArrivalTime(), currentTimestamp);
+                    limitWaitMillis = gcraWait(clientApiLimit, emissionInterval, arrivalTime, currentTimestamp, permits);
+                    updatedState = new GcraState(arrivalTime + permits * emissionInterval);
+                    break;
+                default:
+                    long windowMillis = TimeUnitConversionUtil.toMillis(clientApiLimit.getTimeUnit());
+                    BucketState bucket = TokenBucketRefillUtil.refill((BucketState) state, clientApiLimit.getMaxPermits(), windowMillis,
+                            currentTimestamp);
+                    limitWaitMillis = permits > clientApiLimit.getMaxPermits() ? -1
+                            : TokenBucketRefillUtil.waitMillis(bucket, permits, clientApiLimit.getMaxPermits(), windowMillis);
+                    // Below zero for a reservation, the debt is refilled before the next permit
+                    bucket.setAvailablePermits(bucket.getAvailablePermits() - permits);
+                    updatedState = bucket;
+            }
+
+            if (limitWaitMillis < 0 || limitWaitMillis > maxWaitMillis
+                    || (limitWaitMillis > 0 && clientApiLimit.getAlgorithm() == RateLimitAlgorithm.SLIDING_WINDOW)) {
+                return RateLimitPlan.denied(applicableApiLimits, i, Math.max(limitWaitMillis, 0));
+            }
+            waitMillis = Math.max(waitMillis, limitWaitMillis);
+            updatedStates.add(updatedState);
+        }
+
+        for (int i = 0; i < applicableApiLimits.size(); i++) {
+            states.put(applicableApiLimits.get(i).getId(), updatedStates.get(i));
+            updatedIds.add(applicableApiLimits.get(i).getId());
+        }
+        return RateLimitPlan.allowed(applicableApiLimits, applicableApiLimits.size() - 1, waitMillis);
+    }
+
+    //Counts of the window the timestamp falls in, the previous one being kept only when it is right before it
+    private SlidingWindowState currentWindow(ClientRateLimitData clientApiLimit, SlidingWindowState state, long currentTimestamp) {
+        long windowMillis = TimeUnitConversionUtil.toMillis(clientApiLimit.getTimeUnit());
+        long windowStart = currentTimestamp - currentTimestamp % windowMillis;
+
+        long currentCount = 0;
+        long previousCount = 0;
+        if (state != null) {
+            if (state.getWindowStart() == windowStart) {
+                currentCount = state.getCurrentCount();
+                previousCount = state.getPreviousCount();
+            } else if (state.getWindowStart() == windowStart - windowMillis) {
+                previousCount = state.getCurrentCount();
+            }
+        }
+        return new SlidingWindowState(currentCount, previousCount, windowStart);
+    }
+
+    //Milliseconds before the weighted count leaves room for the permits, 0 when it does now, -1 when it never does.
+    //The previous window counts in proportion to the part of it still covered by the sliding window, so its weight
+    //falls until the permits fit, or the current window has to become the previous one first.
+    private static long slidingWindowWait(ClientRateLimitData clientApiLimit, SlidingWindowState window, long currentTimestamp,
+            long permits) {
+        long maxPermits = clientApiLimit.getMaxPermits();
+        if (permits > maxPermits) {
+            return -1;
+        }
+        double windowMillis = TimeUnitConversionUtil.toMillis(clientApiLimit.getTimeUnit());
+        long elapsed = currentTimestamp - window.getWindowStart();
+        double previousWeight = (windowMillis - elapsed) / windowMillis;
+        if (window.getCurrentCount() + window.getPreviousCount() * previousWeight + permits <= maxPermits) {
+            return 0;
+        }
+        long slack = maxPermits - window.getCurrentCount() - permits;
+        if (slack >= 0) {
+            return (long) Math.ceil(windowMillis - slack * windowMillis / window.getPreviousCount() - elapsed);
+        }
+        return (long) Math.ceil(2 * windowMillis - (maxPermits - permits) * windowMillis / window.getCurrentCount() - elapsed);
+    }
+
+    //Milliseconds before the permits fit in the burst tolerance, 0 when they do now, -1 when they never do.
+    //Requests are spaced by the emission interval, the theoretical arrival time may run ahead of the clock by the
+    //tolerance, which lets a burst of requests through at once; the last of the permits is scheduled permits - 1
+    //emission intervals after the first one.
+    private static long gcraWait(ClientRateLimitData clientApiLimit, double emissionInterval, double arrivalTime, long currentTimestamp,
+            long permits) {
+        if (permits > clientApiLimit.getBurst()) {
+            return -1;
+        }
+        double wait = arrivalTime + (permits - 1) * emissionInterval - gcraTolerance(clientApiLimit, emissionInterval) - currentTimestamp;
+        return wait > 0 ? (long) Math.ceil(wait) : 0;
+    }
+
+    private static double gcraEmissionInterval(ClientRateLimitData clientApiLimit) {
+        return TimeUnitConversionUtil.toMillis(clientApiLimit.getTimeUnit()) / (double) clientApiLimit.getMaxPermits();
+    }
+
+    private static double gcraTolerance(ClientRateLimitData clientApiLimit, double emissionInterval) {
+        return emissionInterval * (clientApiLimit.getBurst() - 1);
+    }
+}
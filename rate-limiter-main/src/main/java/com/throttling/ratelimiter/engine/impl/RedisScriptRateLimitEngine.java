@@ -0,0 +1,217 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.redisson.api.RBatch;
+import org.redisson.api.RScript;
+import org.redisson.api.RScriptAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import com.throttling.ratelimiter.engine.RateLimitEngine;
+import com.throttling.ratelimiter.enums.DecisionOutcome;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+import com.throttling.ratelimiter.pojo.request.ClientApiRequest;
+import com.throttling.ratelimiter.repository.RateLimitStateRepository;
+import com.throttling.ratelimiter.service.impl.ClientConfigServiceImpl;
+import com.throttling.ratelimiter.sharding.LimitShardRouter;
+
+import reactor.core.publisher.Mono;
+
+//Checks and updates the state of all applicable limits in a single EVALSHA, no distributed lock required
+@Component
+@ConditionalOnProperty(name = "ratelimiter.engine", havingValue = "redis-script", matchIfMissing = true)
+public class RedisScriptRateLimitEngine implements RateLimitEngine {
+
+    @Autowired
+    private ClientConfigServiceImpl clientConfigServiceImpl;
+
+    @Autowired
+    private RateLimitStateRepository rateLimitStateRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private LimitShardRouter limitShardRouter;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private RedisClock redisClock;
+
+    @Autowired
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> rateLimitScript;
+
+    private volatile boolean isScriptLoaded;
+
+    @Override
+    public RateLimitDecision tryAcquire(String clientId, String methodName, String apiName, long permits, long maxWaitMillis) {
+        List<ClientRateLimitData> applicableApiLimits = clientConfigServiceImpl.fetchApplicableRateLimits(clientId, methodName, apiName);
+        if (applicableApiLimits.isEmpty()) {
+            return RateLimitDecision.noLimits();
+        }
+        if (limitShardRouter.isSharded(clientId)) {
+            return acquireFromShards(applicableApiLimits, limitShardRouter.pickShard(), limitShardRouter.getProbes(), permits, maxWaitMillis);
+        }
+        return acquire(applicableApiLimits, permits, maxWaitMillis);
+    }
+
+    private RateLimitDecision acquire(List<ClientRateLimitData> applicableApiLimits, long permits, long maxWaitMillis) {
+        RateLimitScriptCall call = new RateLimitScriptCall(rateLimitStateRepository::buildStateKey);
+        call.addRequest(0, applicableApiLimits, permits, maxWaitMillis);
+
+        @SuppressWarnings("unchecked")
+        List<Long> result = (List<Long>) stringRedisTemplate.execute(rateLimitScript, call.getKeys(),
+                (Object[]) call.buildArgs(redisClock.currentTimeMillis()));
+        return call.toDecision(0, result);
+    }
+
+    //Tries the sub-limits of shard, then of the next shards while they deny the request
+    private RateLimitDecision acquireFromShards(List<ClientRateLimitData> applicableApiLimits, int shard, int probes, long permits,
+            long maxWaitMillis) {
+        RateLimitDecision decision;
+        int probe = 0;
+        do {
+            decision = acquire(limitShardRouter.forShard(applicableApiLimits, shard + probe), permits, maxWaitMillis);
+        } while (decision.getOutcome() == DecisionOutcome.DENIED && probe++ < probes);
+        return decision;
+    }
+
+    //Same evaluation through Redisson's async API, no thread waits for the script result
+    @Override
+    public Mono<RateLimitDecision> tryAcquireReactive(String clientId, String methodName, String apiName, long permits,
+            long maxWaitMillis) {
+        return clientConfigServiceImpl.fetchApplicableRateLimitsReactive(clientId, methodName, apiName)
+                .flatMap(applicableApiLimits -> {
+                    if (applicableApiLimits.isEmpty()) {
+                        return Mono.just(RateLimitDecision.noLimits());
+                    }
+                    if (limitShardRouter.isSharded(clientId)) {
+                        return acquireFromShardsReactive(applicableApiLimits, limitShardRouter.pickShard(), 0, permits, maxWaitMillis);
+                    }
+                    return acquireReactive(applicableApiLimits, permits, maxWaitMillis);
+                });
+    }
+
+    private Mono<RateLimitDecision> acquireReactive(List<ClientRateLimitData> applicableApiLimits, long permits, long maxWaitMillis) {
+        RateLimitScriptCall call = new RateLimitScriptCall(rateLimitStateRepository::buildStateKey);
+        call.addRequest(0, applicableApiLimits, permits, maxWaitMillis);
+        return executeAsync(call, redisClock.currentTimeMillis()).map(result -> call.toDecision(0, result));
+    }
+
+    private Mono<RateLimitDecision> acquireFromShardsReactive(List<ClientRateLimitData> applicableApiLimits, int shard, int probe,
+            long permits, long maxWaitMillis) {
+        return acquireReactive(limitShardRouter.forShard(applicableApiLimits, shard + probe), permits, maxWaitMillis)
+                .flatMap(decision -> decision.getOutcome() == DecisionOutcome.DENIED && probe < limitShardRouter.getProbes()
+                        ? acquireFromShardsReactive(applicableApiLimits, shard, probe + 1, permits, maxWaitMillis) : Mono.just(decision));
+    }
+
+    private Mono<List<Object>> executeAsync(RateLimitScriptCall call, long currentTimestamp) {
+        RScript script = redissonClient.getScript(StringCodec.INSTANCE);
+        List<Object> keys = new ArrayList<>(call.getKeys());
+        String[] args = call.buildArgs(currentTimestamp);
+        return Mono.<List<Object>>fromCompletionStage(script.evalShaAsync(RScript.Mode.READ_WRITE, rateLimitScript.getSha1(),
+                        RScript.ReturnType.MULTI, keys, (Object[]) args))
+                // Script cache was flushed, EVAL loads it again
+                .onErrorResume(e -> String.valueOf(e.getMessage()).contains("NOSCRIPT"),
+                        e -> Mono.fromCompletionStage(script.evalAsync(RScript.Mode.READ_WRITE, rateLimitScript.getScriptAsString(),
+                                RScript.ReturnType.MULTI, keys, (Object[]) args)));
+    }
+
+    @Override
+    public boolean supportsGroupCommit() {
+        return true;
+    }
+
+    //One script invocation per client, all of them sent in a single Redisson batch (pipeline). Requests of a sharded
+    //client use the same shard, the ones it denies are tried again on the next shards afterwards.
+    @Override
+    public List<RateLimitDecision> tryAcquireAll(List<ClientApiRequest> clientApiRequests) {
+        RateLimitDecision[] decisions = new RateLimitDecision[clientApiRequests.size()];
+        Map<String, RateLimitScriptCall> calls = new LinkedHashMap<>();
+        Map<String, Integer> clientShards = new HashMap<>();
+        Map<Integer, List<ClientRateLimitData>> shardedRequests = new LinkedHashMap<>();
+
+        for (int i = 0; i < clientApiRequests.size(); i++) {
+            ClientApiRequest request = clientApiRequests.get(i);
+            List<ClientRateLimitData> applicableApiLimits = clientConfigServiceImpl.fetchApplicableRateLimits(
+                    request.getClientId(), request.getMethodName().name(), request.getApiName());
+            if (applicableApiLimits.isEmpty()) {
+                decisions[i] = RateLimitDecision.noLimits();
+                continue;
+            }
+            if (limitShardRouter.isSharded(request.getClientId())) {
+                shardedRequests.put(i, applicableApiLimits);
+                int shard = clientShards.computeIfAbsent(request.getClientId(), clientId -> limitShardRouter.pickShard());
+                applicableApiLimits = limitShardRouter.forShard(applicableApiLimits, shard);
+            }
+            calls.computeIfAbsent(request.getClientId(), clientId -> new RateLimitScriptCall(rateLimitStateRepository::buildStateKey))
+                    .addRequest(i, applicableApiLimits, request.getCost(), request.getMaxWaitMillis());
+        }
+
+        if (!calls.isEmpty()) {
+            List<RateLimitScriptCall> pipelinedCalls = new ArrayList<>(calls.values());
+            List<?> results = executePipelined(pipelinedCalls, true);
+            for (int c = 0; c < pipelinedCalls.size(); c++) {
+                RateLimitScriptCall call = pipelinedCalls.get(c);
+                List<?> callResults = (List<?>) results.get(c);
+                for (int r = 0; r < call.getPositions().size(); r++) {
+                    decisions[call.getPositions().get(r)] = call.toDecision(r, callResults);
+                }
+            }
+        }
+
+        if (limitShardRouter.getProbes() > 0) {
+            shardedRequests.forEach((position, applicableApiLimits) -> {
+                if (decisions[position].getOutcome() == DecisionOutcome.DENIED) {
+                    ClientApiRequest request = clientApiRequests.get(position);
+                    int shard = clientShards.get(request.getClientId());
+                    decisions[position] = acquireFromShards(applicableApiLimits, shard + 1, limitShardRouter.getProbes() - 1,
+                            request.getCost(), request.getMaxWaitMillis());
+                }
+            });
+        }
+        return Arrays.asList(decisions);
+    }
+
+    private List<?> executePipelined(List<RateLimitScriptCall> calls, boolean retryOnMissingScript) {
+        // EVALSHA inside a batch cannot fall back to EVAL, so make sure the script is cached first
+        if (!isScriptLoaded) {
+            redissonClient.getScript(StringCodec.INSTANCE).scriptLoad(rateLimitScript.getScriptAsString());
+            isScriptLoaded = true;
+        }
+
+        long currentTimestamp = redisClock.currentTimeMillis();
+        RBatch batch = redissonClient.createBatch();
+        RScriptAsync script = batch.getScript(StringCodec.INSTANCE);
+        for (RateLimitScriptCall call : calls) {
+            script.evalShaAsync(RScript.Mode.READ_WRITE, rateLimitScript.getSha1(), RScript.ReturnType.MULTI,
+                    new ArrayList<Object>(call.getKeys()), (Object[]) call.buildArgs(currentTimestamp));
+        }
+
+        try {
+            return batch.execute().getResponses();
+        } catch (RuntimeException e) {
+            // Script cache was flushed, nothing has been evaluated so the batch can be sent again
+            if (retryOnMissingScript && String.valueOf(e.getMessage()).contains("NOSCRIPT")) {
+                isScriptLoaded = false;
+                return executePipelined(calls, false);
+            }
+            throw e;
+        }
+    }
+}
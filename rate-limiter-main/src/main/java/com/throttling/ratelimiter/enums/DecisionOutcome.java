@@ -0,0 +1,5 @@
+package com.throttling.ratelimiter.enums;
+
+public enum DecisionOutcome {
+  ALLOWED, DENIED, NO_LIMITS;
+}
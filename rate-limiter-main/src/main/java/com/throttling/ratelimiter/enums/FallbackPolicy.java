@@ -0,0 +1,8 @@
+package com.throttling.ratelimiter.enums;
+
+//How limits of a type are enforced while Redis is unavailable
+public enum FallbackPolicy {
+  LOCAL, // every node enforces its share of the limit in memory
+  OPEN, // the limit is not enforced
+  CLOSED; // requests the limit applies to are denied
+}
@@ -0,0 +1,5 @@
+package com.throttling.ratelimiter.enums;
+
+public enum RateLimitAlgorithm {
+  TOKEN_BUCKET, SLIDING_WINDOW, GCRA;
+}
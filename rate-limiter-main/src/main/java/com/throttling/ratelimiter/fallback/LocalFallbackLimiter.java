@@ -0,0 +1,112 @@
+package com.throttling.ratelimiter.fallback;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.throttling.ratelimiter.cache.RateLimitConfigNearCache;
+import com.throttling.ratelimiter.cache.RateLimitPlan;
+import com.throttling.ratelimiter.engine.impl.LocalLimiters;
+import com.throttling.ratelimiter.enums.FallbackPolicy;
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.metrics.RateLimiterMetrics;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+
+//Decides requests in the JVM while Redis is unavailable, without any I/O. Limits are resolved from the config
+//near-cache (including plans past their TTL), the limits of each type are then enforced as
+//ratelimiter.fallback.policy.* says: LOCAL limits by this node alone for its share (1/ratelimiter.fallback.nodes) of
+//the permits, OPEN limits not at all, CLOSED limits deny every request. Clients whose limits were never loaded on this
+//node, and that are not known to be absent, are allowed or denied with ratelimiter.fallback.allow-unresolved.
+@Component
+public class LocalFallbackLimiter {
+
+    @Autowired
+    private RateLimitConfigNearCache rateLimitConfigNearCache;
+
+    @Autowired
+    private RateLimiterMetrics rateLimiterMetrics;
+
+    @Value("${ratelimiter.fallback.nodes:1}")
+    private int nodes;
+
+    @Value("${ratelimiter.fallback.policy.default:LOCAL}")
+    private FallbackPolicy defaultLimitPolicy;
+
+    @Value("${ratelimiter.fallback.policy.method:LOCAL}")
+    private FallbackPolicy methodLimitPolicy;
+
+    @Value("${ratelimiter.fallback.policy.api:LOCAL}")
+    private FallbackPolicy apiLimitPolicy;
+
+    @Value("${ratelimiter.fallback.allow-unresolved:false}")
+    private boolean isUnresolvedAllowed;
+
+    private final Map<LimitType, FallbackPolicy> policies = new EnumMap<>(LimitType.class);
+
+    private final LocalLimiters localLimiters = new LocalLimiters();
+
+    // This node's share of each limit, dropped together with the limit's plan (keys are compared by identity)
+    private final Cache<ClientRateLimitData, ClientRateLimitData> nodeShares = Caffeine.newBuilder().weakKeys().build();
+
+    @PostConstruct
+    public void init() {
+        policies.put(LimitType.DEFAULT, defaultLimitPolicy);
+        policies.put(LimitType.METHOD, methodLimitPolicy);
+        policies.put(LimitType.API, apiLimitPolicy);
+        nodes = Math.max(1, nodes);
+    }
+
+    public RateLimitDecision tryAcquire(String clientId, String methodName, String apiName, long permits, long maxWaitMillis) {
+        rateLimiterMetrics.recordFallbackDecision();
+        RateLimitPlan plan = rateLimitConfigNearCache.getLastKnown(clientId);
+        if (plan == null) {
+            return RateLimitDecision.unresolved(isUnresolvedAllowed);
+        }
+
+        List<ClientRateLimitData> applicableApiLimits = plan.resolve(methodName, apiName);
+        if (applicableApiLimits.isEmpty()) {
+            return RateLimitDecision.noLimits();
+        }
+
+        List<ClientRateLimitData> localLimits = new ArrayList<>(applicableApiLimits.size());
+        for (int i = 0; i < applicableApiLimits.size(); i++) {
+            ClientRateLimitData limit = applicableApiLimits.get(i);
+            switch (policies.get(limit.getLimitType())) {
+                case CLOSED:
+                    return RateLimitPlan.denied(applicableApiLimits, i, 0);
+                case LOCAL:
+                    localLimits.add(nodes == 1 ? limit : nodeShares.get(limit, this::nodeShare));
+                    break;
+                default:
+                    // OPEN, not enforced
+            }
+        }
+        if (localLimits.isEmpty()) {
+            return RateLimitPlan.allowed(applicableApiLimits, applicableApiLimits.size() - 1, 0);
+        }
+        return localLimiters.tryAcquire(localLimits, permits, maxWaitMillis);
+    }
+
+    // Rounded up, so that a small limit still lets requests through on every node
+    private ClientRateLimitData nodeShare(ClientRateLimitData limit) {
+        ClientRateLimitData share = new ClientRateLimitData(limit.getClientId(), limit.getLimitType(), limit.getLimitName(),
+                limit.getTimeUnit(), share(limit.getMaxPermits()), limit.getAlgorithm());
+        share.setBurst(share(limit.getBurst()));
+        share.setId(limit.getId());
+        return share;
+    }
+
+    private long share(long total) {
+        return Math.max(1, (total + nodes - 1) / nodes);
+    }
+}
@@ -0,0 +1,185 @@
+package com.throttling.ratelimiter.fallback;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.redisson.client.RedisException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.throttling.ratelimiter.coalescing.CoalescedFailureException;
+import com.throttling.ratelimiter.metrics.RateLimiterMetrics;
+
+import reactor.core.publisher.Mono;
+
+//Runs calls that depend on Redis and switches to a fallback when they fail with a store error (command timeout,
+//connection failure). After ratelimiter.circuit.failure-threshold consecutive failures the circuit opens and calls go
+//straight to the fallback. Every ratelimiter.circuit.open-duration-ms a single trial call is let through, the circuit
+//closes again once one succeeds. Lock waits running out mean a busy lock rather than an unavailable Redis, they are
+//neither failures nor decided by the fallback.
+@Component
+public class RedisCircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    private static final int MAX_CAUSE_DEPTH = 10;
+
+    private enum Permission {
+        NONE, CALL, TRIAL
+    }
+
+    @Autowired
+    private RateLimiterMetrics rateLimiterMetrics;
+
+    @Value("${ratelimiter.fallback.enabled:true}")
+    private boolean isEnabled;
+
+    @Value("${ratelimiter.circuit.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${ratelimiter.circuit.open-duration-ms:5000}")
+    private long openDurationMillis;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    // Earliest time of the next trial call while the circuit is open
+    private final AtomicLong trialAtMillis = new AtomicLong();
+
+    private volatile boolean isOpen;
+
+    @PostConstruct
+    public void init() {
+        rateLimiterMetrics.monitorCircuit(this::isOpen);
+    }
+
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    public <T> T call(Supplier<T> action, Supplier<T> fallback) {
+        return call(ignored -> action.get(), ignored -> fallback.get(), null);
+    }
+
+    //Same with the input passed to action or fallback, so that callers on the hot path can keep both in fields
+    //instead of allocating capturing lambdas per call
+    public <A, T> T call(Function<A, T> action, Function<A, T> fallback, A input) {
+        if (!isEnabled) {
+            return action.apply(input);
+        }
+        Permission permission = acquirePermission();
+        if (permission == Permission.NONE) {
+            return fallback.apply(input);
+        }
+        T result;
+        try {
+            result = action.apply(input);
+        } catch (RuntimeException e) {
+            if (!isStoreFailure(e)) {
+                onSuccess(permission);
+                throw e;
+            }
+            onFailure(permission, e);
+            return fallback.apply(input);
+        }
+        onSuccess(permission);
+        return result;
+    }
+
+    //Same for a call that completes asynchronously, the action is only assembled when the circuit lets it through
+    public <T> Mono<T> callReactive(Supplier<Mono<T>> action, Supplier<Mono<T>> fallback) {
+        if (!isEnabled) {
+            return action.get();
+        }
+        return Mono.defer(() -> {
+            Permission permission = acquirePermission();
+            if (permission == Permission.NONE) {
+                return fallback.get();
+            }
+            return action.get()
+                    .doOnSuccess(result -> onSuccess(permission))
+                    .onErrorResume(e -> {
+                        if (!isStoreFailure(e)) {
+                            onSuccess(permission);
+                            return Mono.error(e);
+                        }
+                        onFailure(permission, e);
+                        return fallback.get();
+                    });
+        });
+    }
+
+    // Trial calls are spaced by the open duration, a trial that never reports back is simply followed by the next one
+    private Permission acquirePermission() {
+        if (!isOpen) {
+            return Permission.CALL;
+        }
+        long trialAt = trialAtMillis.get();
+        long now = System.currentTimeMillis();
+        if (now >= trialAt && trialAtMillis.compareAndSet(trialAt, now + openDurationMillis)) {
+            return Permission.TRIAL;
+        }
+        return Permission.NONE;
+    }
+
+    private void onSuccess(Permission permission) {
+        if (permission == Permission.TRIAL) {
+            close();
+        } else if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    // A batch failure shared by coalesced callers was counted once already, by the caller it was thrown to
+    private void onFailure(Permission permission, Throwable failure) {
+        if (failure instanceof CoalescedFailureException) {
+            LOGGER.debug("Coalesced Redis call failed, deciding locally: {}", failure.getCause().toString());
+        } else if (permission == Permission.TRIAL) {
+            LOGGER.debug("Redis still unavailable: {}", failure.toString());
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open(failure);
+        } else {
+            LOGGER.debug("Redis call failed, deciding locally: {}", failure.toString());
+        }
+    }
+
+    private synchronized void open(Throwable failure) {
+        if (!isOpen) {
+            trialAtMillis.set(System.currentTimeMillis() + openDurationMillis);
+            isOpen = true;
+            LOGGER.warn("Redis circuit opened after {} consecutive failures, requests are decided locally: {}",
+                    failureThreshold, failure.toString());
+        }
+    }
+
+    private synchronized void close() {
+        if (isOpen) {
+            consecutiveFailures.set(0);
+            isOpen = false;
+            LOGGER.info("Redis circuit closed, requests are decided by Redis again");
+        }
+    }
+
+    //Errors of the store itself, as opposed to invalid input or bugs, possibly wrapped by the async APIs
+    static boolean isStoreFailure(Throwable failure) {
+        Throwable cause = failure;
+        for (int depth = 0; cause != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            if (cause instanceof CannotAcquireLockException) {
+                return false;
+            }
+            if (cause instanceof DataAccessException || cause instanceof RedisException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+}
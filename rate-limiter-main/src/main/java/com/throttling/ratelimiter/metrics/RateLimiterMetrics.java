@@ -0,0 +1,178 @@
+package com.throttling.ratelimiter.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.throttling.ratelimiter.enums.DecisionOutcome;
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+//Meters of the decision path, served by the actuator metrics endpoint (/actuator/metrics/ratelimiter.*)
+@Component
+public class RateLimiterMetrics {
+
+    private static final String NO_LIMIT_TYPE = "NONE";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer verifyTimer;
+
+    private Timer verifyBatchTimer;
+
+    private Timer lockWaitTimer;
+
+    private Timer configFetchTimer;
+
+    private Timer stateSaveTimer;
+
+    private Counter redisCacheHits;
+
+    private Counter redisCacheMisses;
+
+    private Counter fallbackDecisions;
+
+    private Counter clientFilterRejections;
+
+    private DistributionSummary coalescedBatchSize;
+
+    private final Map<DecisionOutcome, Map<LimitType, Counter>> decisionCounters = new EnumMap<>(DecisionOutcome.class);
+
+    private final Map<DecisionOutcome, Counter> untypedDecisionCounters = new EnumMap<>(DecisionOutcome.class);
+
+    @PostConstruct
+    public void init() {
+        verifyTimer = Timer.builder("ratelimiter.verify")
+                .description("verifyApiLimit latency")
+                .publishPercentiles(0.5, 0.95, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        verifyBatchTimer = Timer.builder("ratelimiter.verify.batch")
+                .description("verifyApiLimits latency for a whole batch")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        lockWaitTimer = Timer.builder("ratelimiter.lock.wait")
+                .description("Time spent acquiring the per-client distributed lock")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        configFetchTimer = Timer.builder("ratelimiter.config.fetch")
+                .description("Time spent resolving the applicable limits of a request")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        stateSaveTimer = Timer.builder("ratelimiter.state.save")
+                .description("Time spent writing bucket state")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+
+        redisCacheHits = Counter.builder("ratelimiter.config.cache").tag("cache", "redis").tag("result", "hit").register(meterRegistry);
+        redisCacheMisses = Counter.builder("ratelimiter.config.cache").tag("cache", "redis").tag("result", "miss").register(meterRegistry);
+        coalescedBatchSize = DistributionSummary.builder("ratelimiter.coalescing.batch.size")
+                .description("Concurrent requests of one client evaluated together")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        fallbackDecisions = Counter.builder("ratelimiter.fallback.decisions")
+                .description("Requests decided by the local fallback while Redis was unavailable")
+                .register(meterRegistry);
+        clientFilterRejections = Counter.builder("ratelimiter.client-presence.filter.rejections")
+                .description("Unknown clients rejected by the Bloom filter without a Redis lookup")
+                .register(meterRegistry);
+
+        // Registered up front so that recording a decision is a map lookup and an increment
+        for (DecisionOutcome outcome : DecisionOutcome.values()) {
+            Map<LimitType, Counter> counters = new EnumMap<>(LimitType.class);
+            for (LimitType limitType : LimitType.values()) {
+                counters.put(limitType, decisionCounter(outcome, limitType.name()));
+            }
+            decisionCounters.put(outcome, counters);
+            untypedDecisionCounters.put(outcome, decisionCounter(outcome, NO_LIMIT_TYPE));
+        }
+    }
+
+    private Counter decisionCounter(DecisionOutcome outcome, String limitType) {
+        return Counter.builder("ratelimiter.decisions")
+                .description("Rate limit decisions by outcome and deciding limit type")
+                .tag("outcome", outcome.name().toLowerCase())
+                .tag("limitType", limitType)
+                .register(meterRegistry);
+    }
+
+    // Durations are passed in rather than timing a Supplier, so the hot path allocates no lambda
+    public void recordVerify(long nanos) {
+        verifyTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public <T> Mono<T> timeVerifyReactive(Mono<T> verification) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return verification.doFinally(signal -> sample.stop(verifyTimer));
+        });
+    }
+
+    public <T> T timeVerifyBatch(Supplier<T> verification) {
+        return verifyBatchTimer.record(verification);
+    }
+
+    public void recordConfigFetch(long nanos) {
+        configFetchTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLockWait(long nanos) {
+        lockWaitTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStateSave(long nanos) {
+        stateSaveTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRedisCacheLookup(boolean hit) {
+        (hit ? redisCacheHits : redisCacheMisses).increment();
+    }
+
+    public void recordDecision(RateLimitDecision decision) {
+        if (decision.getLimitType() == null) {
+            untypedDecisionCounters.get(decision.getOutcome()).increment();
+        } else {
+            decisionCounters.get(decision.getOutcome()).get(decision.getLimitType()).increment();
+        }
+    }
+
+    public void recordCoalescedBatch(int size) {
+        coalescedBatchSize.record(size);
+    }
+
+    public void recordFallbackDecision() {
+        fallbackDecisions.increment();
+    }
+
+    public void recordClientFilterRejection() {
+        clientFilterRejections.increment();
+    }
+
+    //1 while the circuit around Redis is open, 0 otherwise
+    public void monitorCircuit(BooleanSupplier isOpen) {
+        Gauge.builder("ratelimiter.redis.circuit.open", () -> isOpen.getAsBoolean() ? 1 : 0)
+                .description("Whether requests are decided by the local fallback instead of Redis")
+                .register(meterRegistry);
+    }
+
+    public void monitorCache(Cache<?, ?> cache, String cacheName) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, cacheName);
+    }
+}
@@ -0,0 +1,20 @@
+package com.throttling.ratelimiter.pojo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Mutable token bucket state of one limit, stored as a Redis hash
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BucketState implements LimitState {
+
+  private long availablePermits;
+
+  private long lastRequestTimeStamp;
+
+  // Refill progress towards the next permit, in 1/windowMillis of a permit
+  private long refillCredit;
+
+}
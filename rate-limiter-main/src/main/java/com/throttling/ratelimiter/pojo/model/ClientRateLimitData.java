@@ -4,13 +4,18 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.redis.core.RedisHash;
 import org.springframework.data.redis.core.index.Indexed;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
 import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.util.RateLimitKeyUtil;
 
 import lombok.Data;
 
+//Limit configuration only, the mutable bucket state is kept separately as BucketState
 @Data
 @RedisHash("ClientRateLimitData")
+@JsonIgnoreProperties(ignoreUnknown = true) // cached entries written before the split still carry state fields
 public class ClientRateLimitData {
 
   @Id
@@ -29,28 +34,38 @@ public class ClientRateLimitData {
 
   private long maxPermits;
 
-  private long availablePermits;
+  private RateLimitAlgorithm algorithm;
 
-  private long lastRequestTimeStamp;
+  private long burst; // GCRA only, requests allowed at once on top of the sustained rate
 
   public ClientRateLimitData() {}
 
   public ClientRateLimitData(String clientId, LimitType limitType, String limitName,
-      TimeUnit timeUnit, long maxPermits, long availablePermits, long lastRequestTimeStamp) {
+      TimeUnit timeUnit, long maxPermits) {
+    this(clientId, limitType, limitName, timeUnit, maxPermits, RateLimitAlgorithm.TOKEN_BUCKET);
+  }
+
+  public ClientRateLimitData(String clientId, LimitType limitType, String limitName,
+      TimeUnit timeUnit, long maxPermits, RateLimitAlgorithm algorithm) {
     this.clientId = clientId;
     this.limitType = limitType;
     this.limitName = limitName;
     this.timeUnit = timeUnit;
     this.maxPermits = maxPermits;
-    this.availablePermits = availablePermits;
-    this.lastRequestTimeStamp = lastRequestTimeStamp;
+    this.algorithm = algorithm;
 
     // Generate the composite key
-    this.id = generateId(clientId, limitType, limitName);
+    this.id = RateLimitKeyUtil.buildRateLimitKey(clientId, limitType, limitName);
+  }
+
+  // Limits stored before the algorithm was configurable are token buckets
+  public RateLimitAlgorithm getAlgorithm() {
+    return algorithm == null ? RateLimitAlgorithm.TOKEN_BUCKET : algorithm;
   }
 
-  private String generateId(String clientId, LimitType limitType, String limitName) {
-    return clientId + ":" + limitType.name() + ":" + limitName;
+  // Without an explicit burst a GCRA limit may use its whole time unit quota at once, like a token bucket
+  public long getBurst() {
+    return burst > 0 ? burst : maxPermits;
   }
 
 }
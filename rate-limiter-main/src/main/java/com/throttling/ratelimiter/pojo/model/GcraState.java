@@ -0,0 +1,15 @@
+package com.throttling.ratelimiter.pojo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//GCRA state of one limit: the theoretical arrival time of the next request, in milliseconds
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GcraState implements LimitState {
+
+  private double theoreticalArrivalTime;
+
+}
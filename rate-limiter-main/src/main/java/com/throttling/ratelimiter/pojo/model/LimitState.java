@@ -0,0 +1,6 @@
+package com.throttling.ratelimiter.pojo.model;
+
+//Mutable state of one limit, its shape depends on the limit's RateLimitAlgorithm
+public interface LimitState {
+
+}
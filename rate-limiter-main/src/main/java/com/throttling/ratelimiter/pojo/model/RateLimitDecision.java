@@ -0,0 +1,55 @@
+package com.throttling.ratelimiter.pojo.model;
+
+import com.throttling.ratelimiter.enums.DecisionOutcome;
+import com.throttling.ratelimiter.enums.LimitType;
+
+import lombok.Value;
+
+//Immutable, so that the decisions without per-request content can be shared
+@Value
+public class RateLimitDecision {
+
+  private static final RateLimitDecision NO_LIMITS = new RateLimitDecision(DecisionOutcome.NO_LIMITS, null, null, 0);
+
+  private DecisionOutcome outcome;
+
+  private LimitType limitType; // most specific applied limit when allowed, rejecting limit when denied
+
+  private String limitName;
+
+  // When denied, the wait after which the request could pass, 0 if it never can or the algorithm cannot tell.
+  // When allowed, the wait before the reserved permits may be used.
+  private long retryAfterMillis;
+
+  public static RateLimitDecision allowed(ClientRateLimitData governingLimit) {
+    return allowed(governingLimit, 0);
+  }
+
+  //Permits reserved, to be used once waitMillis have passed
+  public static RateLimitDecision allowed(ClientRateLimitData governingLimit, long waitMillis) {
+    return new RateLimitDecision(DecisionOutcome.ALLOWED, governingLimit.getLimitType(), governingLimit.getLimitName(), waitMillis);
+  }
+
+  public static RateLimitDecision denied(ClientRateLimitData deniedLimit) {
+    return denied(deniedLimit, 0);
+  }
+
+  public static RateLimitDecision denied(ClientRateLimitData deniedLimit, long retryAfterMillis) {
+    return new RateLimitDecision(DecisionOutcome.DENIED, deniedLimit.getLimitType(), deniedLimit.getLimitName(), retryAfterMillis);
+  }
+
+  //The lock of the limits was not acquired in time. Denied without taking permits anywhere else, the lock is usually
+  //free again after the wait.
+  public static RateLimitDecision lockBusy(long retryAfterMillis) {
+    return new RateLimitDecision(DecisionOutcome.DENIED, null, null, retryAfterMillis);
+  }
+
+  //Limits of the client could not be looked up, the request is let through or denied without one
+  public static RateLimitDecision unresolved(boolean isAllowed) {
+    return new RateLimitDecision(isAllowed ? DecisionOutcome.ALLOWED : DecisionOutcome.DENIED, null, null, 0);
+  }
+
+  public static RateLimitDecision noLimits() {
+    return NO_LIMITS;
+  }
+}
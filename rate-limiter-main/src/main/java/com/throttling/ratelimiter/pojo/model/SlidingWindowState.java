@@ -0,0 +1,19 @@
+package com.throttling.ratelimiter.pojo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Sliding window counter state of one limit: request counts of the current and previous fixed windows
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlidingWindowState implements LimitState {
+
+  private long currentCount;
+
+  private long previousCount;
+
+  private long windowStart; // start of the current window, a multiple of the window length
+
+}
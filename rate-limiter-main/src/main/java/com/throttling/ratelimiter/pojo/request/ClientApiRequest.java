@@ -11,4 +11,11 @@ public class ClientApiRequest {
   private ApiMethod methodName;
 
   private String apiName;
+
+  // Permits taken from every applicable limit, e.g. the number of items of a bulk call
+  private long cost = 1;
+
+  // Reserve mode when positive: permits available within this wait are taken now and the response says how long
+  // to wait before using them. 0 takes them only if they are available now.
+  private long maxWaitMillis;
 }
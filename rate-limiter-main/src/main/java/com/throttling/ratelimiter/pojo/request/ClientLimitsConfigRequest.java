@@ -1,6 +1,7 @@
 package com.throttling.ratelimiter.pojo.request;
 
 import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
 import lombok.Data;
 
 @Data
@@ -12,4 +13,8 @@ public class ClientLimitsConfigRequest {
 
   private ClientIntervalRequestsLimit timeIntervalLimit;
 
+  private RateLimitAlgorithm algorithm; // TOKEN_BUCKET when not set
+
+  private Long burst; // GCRA only, maxRequests when not set
+
 }
@@ -1,17 +1,26 @@
 package com.throttling.ratelimiter.pojo.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.throttling.ratelimiter.enums.Status;
 
 import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
-@Data
-@NoArgsConstructor
+//Immutable, so that the responses without per-request content can be shared
+@Value
 @AllArgsConstructor
 public class BaseResponse {
 	
   private Status status;
   private String message;
+
+  // Verify responses only: when denied, the wait after which the request could pass (0 if it never can); when
+  // permits were reserved, the wait before using them. Left out of the JSON when 0.
+  @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+  private long retryAfterMillis;
+
+  public BaseResponse(Status status, String message) {
+    this(status, message, 0);
+  }
   
 }
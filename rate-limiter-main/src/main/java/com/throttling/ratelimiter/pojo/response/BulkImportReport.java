@@ -0,0 +1,20 @@
+package com.throttling.ratelimiter.pojo.response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+//Outcome of a bulk import, rejected lines are listed with their line number (the first ones only)
+@Data
+public class BulkImportReport {
+
+  private long linesRead;
+  private long clientsImported;
+  private long limitsImported;
+  private long linesRejected;
+  private List<String> errors = new ArrayList<>();
+  private long durationMillis;
+  private long limitsPerSecond;
+
+}
@@ -0,0 +1,20 @@
+package com.throttling.ratelimiter.pojo.response;
+
+import java.util.List;
+
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//One page of a cursor based listing, pass cursor back to get the next page ("0" once everything was listed)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateLimitPage {
+
+  private String cursor;
+  private List<ClientRateLimitData> limits;
+
+}
@@ -0,0 +1,175 @@
+package com.throttling.ratelimiter.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.IndexedData;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.convert.SimpleIndexedPropertyValue;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Repository;
+
+import com.throttling.ratelimiter.pojo.model.ClientData;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.util.RateLimitKeyUtil;
+
+//Saves and deletes clients and limits in a single pipeline, where ClientRepository and ClientRateLimitsRepository
+//need several round trips per entity. Hashes, the keyspace set and the secondary indexes are written the same way
+//as Spring Data's RedisKeyValueAdapter does, so both repositories keep working on the result. The Redis config
+//cache entry and the limit state are written or dropped in the same pipeline.
+@Repository
+public class RateLimitConfigBatchRepository {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitConfigBatchRepository.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisConverter redisConverter;
+
+    @Autowired
+    private RateLimitStateRepository rateLimitStateRepository;
+
+    @Value("${rate.limit.cache.prefix:rate_limit:}")
+    private String cachePrefix;
+
+    // Cleared on the first server that rejects UNLINK (before Redis 4.0), which then gets DEL
+    private volatile boolean isUnlinkSupported = true;
+
+    //Existing limits are overwritten and (re)configured limits start with a full bucket
+    public void saveAll(Collection<ClientData> clients, Collection<ClientRateLimitData> rateLimits) {
+        @SuppressWarnings("unchecked")
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            clients.forEach(client -> save(connection, client));
+            for (ClientRateLimitData rateLimit : rateLimits) {
+                save(connection, rateLimit);
+                connection.set(toBytes(buildCacheKey(rateLimit)), valueSerializer.serialize(rateLimit));
+                rateLimitStateRepository.buildStateKeys(rateLimit).forEach(stateKey -> connection.del(toBytes(stateKey)));
+            }
+            return null;
+        });
+    }
+
+    //Keys are removed with UNLINK, their memory is then freed off the Redis main thread. A rejected pipeline is sent
+    //again with DEL, every command in it can be repeated.
+    public void deleteAll(Collection<ClientData> clients, Collection<ClientRateLimitData> rateLimits) {
+        if (isUnlinkSupported) {
+            try {
+                deleteAll(clients, rateLimits, true);
+                return;
+            } catch (DataAccessException e) {
+                if (!isUnknownCommand(e)) {
+                    throw e;
+                }
+                LOGGER.warn("Redis server does not support UNLINK, deleting keys with DEL from now on");
+                isUnlinkSupported = false;
+            }
+        }
+        deleteAll(clients, rateLimits, false);
+    }
+
+    private void deleteAll(Collection<ClientData> clients, Collection<ClientRateLimitData> rateLimits, boolean isUnlink) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (ClientRateLimitData rateLimit : rateLimits) {
+                delete(connection, rateLimit, isUnlink);
+                remove(connection, toBytes(buildCacheKey(rateLimit)), isUnlink);
+                rateLimitStateRepository.buildStateKeys(rateLimit).forEach(stateKey -> remove(connection, toBytes(stateKey), isUnlink));
+            }
+            clients.forEach(client -> delete(connection, client, isUnlink));
+            return null;
+        });
+    }
+
+    private static void remove(RedisConnection connection, byte[] key, boolean isUnlink) {
+        if (isUnlink) {
+            connection.unlink(key);
+        } else {
+            connection.del(key);
+        }
+    }
+
+    private static boolean isUnknownCommand(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (String.valueOf(cause.getMessage()).contains("unknown command")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void save(RedisConnection connection, Object entity) {
+        RedisData data = write(entity);
+        byte[] id = toBytes(data.getId());
+        byte[] key = toBytes(data.getKeyspace() + ":" + data.getId());
+        byte[] indexesKey = toBytes(data.getKeyspace() + ":" + data.getId() + ":idx");
+        // Indexed properties are part of the id, so an existing entry never has to be moved to another index
+        connection.del(key);
+        connection.hMSet(key, data.getBucket().rawMap());
+        connection.sAdd(toBytes(data.getKeyspace()), id);
+        for (byte[] indexKey : indexKeys(data)) {
+            connection.sAdd(indexKey, id);
+            connection.sAdd(indexesKey, indexKey);
+        }
+    }
+
+    private void delete(RedisConnection connection, Object entity, boolean isUnlink) {
+        RedisData data = write(entity);
+        byte[] id = toBytes(data.getId());
+        // Separate commands, the hash and its index set are only in the same cluster slot when the id carries a hash tag
+        remove(connection, toBytes(data.getKeyspace() + ":" + data.getId()), isUnlink);
+        remove(connection, toBytes(data.getKeyspace() + ":" + data.getId() + ":idx"), isUnlink);
+        connection.sRem(toBytes(data.getKeyspace()), id);
+        for (byte[] indexKey : indexKeys(data)) {
+            connection.sRem(indexKey, id);
+        }
+    }
+
+    private RedisData write(Object entity) {
+        RedisData data = new RedisData();
+        redisConverter.write(entity, data);
+        return data;
+    }
+
+    // <keyspace>:<property>:<value>, see IndexWriter
+    private List<byte[]> indexKeys(RedisData data) {
+        List<byte[]> indexKeys = new ArrayList<>();
+        for (IndexedData indexedData : data.getIndexedData()) {
+            Object value = indexedData instanceof SimpleIndexedPropertyValue ? ((SimpleIndexedPropertyValue) indexedData).getValue() : null;
+            if (value == null) {
+                continue;
+            }
+            byte[] prefix = toBytes(indexedData.getKeyspace() + ":" + indexedData.getIndexName() + ":");
+            byte[] valueBytes = redisConverter.getConversionService().convert(value, byte[].class);
+            byte[] indexKey = new byte[prefix.length + valueBytes.length];
+            System.arraycopy(prefix, 0, indexKey, 0, prefix.length);
+            System.arraycopy(valueBytes, 0, indexKey, prefix.length, valueBytes.length);
+            indexKeys.add(indexKey);
+        }
+        return indexKeys;
+    }
+
+    private String buildCacheKey(ClientRateLimitData rateLimit) {
+        return cachePrefix + RateLimitKeyUtil.buildRateLimitKey(rateLimit.getClientId(), rateLimit.getLimitType(), rateLimit.getLimitName());
+    }
+
+    private static byte[] toBytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,163 @@
+package com.throttling.ratelimiter.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.Bucket;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.response.RateLimitPage;
+
+//Reads limit configurations in batches straight from the sets of ids maintained by Spring Data for
+//@RedisHash("ClientRateLimitData"), so that no listing has to hold every limit in memory. Ids are walked with SSCAN
+//and each batch of hashes is read with one pipeline. SSCAN may return an id more than once and a limit added or
+//removed while the scan runs may or may not be listed.
+@Repository
+public class RateLimitConfigScanRepository {
+
+    private static final String KEYSPACE = "ClientRateLimitData";
+
+    // Set of ids of @RedisHash("ClientData")
+    private static final String CLIENT_KEYSPACE = "ClientData";
+
+    // Index maintained for the @Indexed clientId property
+    private static final String CLIENT_INDEX_PREFIX = KEYSPACE + ":clientId:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisConverter redisConverter;
+
+    @Autowired
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> scanPageScript;
+
+    //Every limit when clientId is null, otherwise the limits of that client
+    public RateLimitPage findPage(String clientId, String cursor, int count) {
+        List<?> result = stringRedisTemplate.execute(scanPageScript, Collections.singletonList(idSetKey(clientId)),
+                cursor, String.valueOf(count));
+        @SuppressWarnings("unchecked")
+        List<String> ids = (List<String>) result.get(1);
+        return new RateLimitPage((String) result.get(0), findAllById(ids));
+    }
+
+    //Hands the limits over batch by batch while the scan is running
+    public void scan(String clientId, int batchSize, Consumer<List<ClientRateLimitData>> batchConsumer) {
+        try (Cursor<String> ids = stringRedisTemplate.opsForSet().scan(idSetKey(clientId), ScanOptions.scanOptions().count(batchSize).build())) {
+            List<String> batch = new ArrayList<>(batchSize);
+            while (ids.hasNext()) {
+                batch.add(ids.next());
+                if (batch.size() == batchSize || !ids.hasNext()) {
+                    batchConsumer.accept(findAllById(batch));
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Set<String> findIdsByClientId(String clientId) {
+        return stringRedisTemplate.opsForSet().members(idSetKey(clientId));
+    }
+
+    //Hands the clients over batch by batch together with their limits, clients without limits map to an empty list
+    public void scanClients(int batchSize, Consumer<Map<String, List<ClientRateLimitData>>> batchConsumer) {
+        try (Cursor<String> clientIds = stringRedisTemplate.opsForSet().scan(CLIENT_KEYSPACE, ScanOptions.scanOptions().count(batchSize).build())) {
+            List<String> batch = new ArrayList<>(batchSize);
+            while (clientIds.hasNext()) {
+                batch.add(clientIds.next());
+                if (batch.size() == batchSize || !clientIds.hasNext()) {
+                    batchConsumer.accept(findAllByClientId(batch));
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //Hands the ids of every client over batch by batch, without reading their limits
+    public void scanClientIds(int batchSize, Consumer<List<String>> batchConsumer) {
+        try (Cursor<String> clientIds = stringRedisTemplate.opsForSet().scan(CLIENT_KEYSPACE, ScanOptions.scanOptions().count(batchSize).build())) {
+            List<String> batch = new ArrayList<>(batchSize);
+            while (clientIds.hasNext()) {
+                batch.add(clientIds.next());
+                if (batch.size() == batchSize || !clientIds.hasNext()) {
+                    batchConsumer.accept(batch);
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Map<String, List<ClientRateLimitData>> findAllByClientId(List<String> clientIds) {
+        List<Object> idSets = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            clientIds.forEach(clientId -> stringConnection.sMembers(idSetKey(clientId)));
+            return null;
+        });
+
+        List<String> ids = new ArrayList<>();
+        Map<String, List<ClientRateLimitData>> rateLimitsByClient = new LinkedHashMap<>(clientIds.size() * 2);
+        for (int i = 0; i < clientIds.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Set<String> clientLimitIds = (Set<String>) idSets.get(i);
+            ids.addAll(clientLimitIds);
+            rateLimitsByClient.put(clientIds.get(i), new ArrayList<>(clientLimitIds.size()));
+        }
+        for (ClientRateLimitData rateLimit : findAllById(ids)) {
+            rateLimitsByClient.get(rateLimit.getClientId()).add(rateLimit);
+        }
+        return rateLimitsByClient;
+    }
+
+    //Reads the hashes of all ids in one pipeline, ids deleted in the meantime are skipped
+    public List<ClientRateLimitData> findAllById(List<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> hashes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            ids.forEach(id -> stringConnection.hGetAll(KEYSPACE + ":" + id));
+            return null;
+        });
+
+        List<ClientRateLimitData> rateLimits = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> hash = (Map<String, String>) hashes.get(i);
+            if (hash == null || hash.isEmpty()) {
+                continue;
+            }
+            ClientRateLimitData rateLimit = redisConverter.read(ClientRateLimitData.class, new RedisData(Bucket.newBucketFromStringMap(hash)));
+            rateLimit.setId(ids.get(i));
+            rateLimits.add(rateLimit);
+        }
+        return rateLimits;
+    }
+
+    private String idSetKey(String clientId) {
+        return clientId == null ? KEYSPACE : CLIENT_INDEX_PREFIX + clientId;
+    }
+}
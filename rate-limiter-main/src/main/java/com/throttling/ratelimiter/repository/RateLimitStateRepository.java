@@ -0,0 +1,180 @@
+package com.throttling.ratelimiter.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.throttling.ratelimiter.cache.RateLimitPlan;
+import com.throttling.ratelimiter.metrics.RateLimiterMetrics;
+import com.throttling.ratelimiter.pojo.model.BucketState;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.GcraState;
+import com.throttling.ratelimiter.pojo.model.LimitState;
+import com.throttling.ratelimiter.pojo.model.SlidingWindowState;
+import com.throttling.ratelimiter.sharding.LimitShardRouter;
+import com.throttling.ratelimiter.util.TimeUnitConversionUtil;
+
+//Limit state stored as plain hashes, outside of Spring Data repositories so that updates do not touch
+//secondary indexes. Token buckets use p = available permits, t = last request timestamp and r = refill credit, sliding windows
+//use c = current window count, l = previous window count and w = current window start, GCRA uses a = theoretical
+//arrival time. A state key expires once it no longer affects decisions, which is equivalent to a missing (full) state.
+@Repository
+public class RateLimitStateRepository {
+
+    public static final String PERMITS_FIELD = "p";
+    public static final String TIMESTAMP_FIELD = "t";
+    public static final String REFILL_CREDIT_FIELD = "r";
+    public static final String CURRENT_COUNT_FIELD = "c";
+    public static final String PREVIOUS_COUNT_FIELD = "l";
+    public static final String WINDOW_START_FIELD = "w";
+    public static final String ARRIVAL_TIME_FIELD = "a";
+
+    private static final String[] BUCKET_FIELDS = {PERMITS_FIELD, TIMESTAMP_FIELD, REFILL_CREDIT_FIELD};
+    private static final String[] SLIDING_WINDOW_FIELDS = {CURRENT_COUNT_FIELD, PREVIOUS_COUNT_FIELD, WINDOW_START_FIELD};
+    private static final String[] GCRA_FIELDS = {ARRIVAL_TIME_FIELD};
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RateLimiterMetrics rateLimiterMetrics;
+
+    @Autowired
+    private LimitShardRouter limitShardRouter;
+
+    @Value("${rate.limit.state.prefix:rate_limit_state:}")
+    private String statePrefix;
+
+    public String buildStateKey(ClientRateLimitData rateLimit) {
+        return statePrefix + rateLimit.getId();
+    }
+
+    //Key of the index-th limit, built once when the list was resolved by a RateLimitPlan
+    public String buildStateKey(List<ClientRateLimitData> rateLimits, int index) {
+        return RateLimitPlan.stateKey(rateLimits, index, statePrefix);
+    }
+
+    //Reads the state of every limit in one pipeline, null entries for limits without state
+    public List<LimitState> findAll(List<ClientRateLimitData> rateLimits) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (int i = 0; i < rateLimits.size(); i++) {
+                stringConnection.hMGet(buildStateKey(rateLimits, i), stateFields(rateLimits.get(i)));
+            }
+            return null;
+        });
+
+        List<LimitState> states = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            List<?> fields = (List<?>) results.get(i);
+            if (fields == null || fields.subList(0, requiredFieldCount(rateLimits.get(i))).contains(null)) {
+                states.add(null);
+                continue;
+            }
+            switch (rateLimits.get(i).getAlgorithm()) {
+                case SLIDING_WINDOW:
+                    states.add(new SlidingWindowState(parse(fields, 0), parse(fields, 1), parse(fields, 2)));
+                    break;
+                case GCRA:
+                    states.add(new GcraState(Double.parseDouble((String) fields.get(0))));
+                    break;
+                default:
+                    states.add(new BucketState(parse(fields, 0), parse(fields, 1), fields.get(2) == null ? 0 : parse(fields, 2)));
+            }
+        }
+        return states;
+    }
+
+    public void saveAll(List<ClientRateLimitData> rateLimits, List<LimitState> states) {
+        long start = System.nanoTime();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (int i = 0; i < rateLimits.size(); i++) {
+                ClientRateLimitData rateLimit = rateLimits.get(i);
+                LimitState state = states.get(i);
+                String key = buildStateKey(rateLimits, i);
+                long windowMillis = TimeUnitConversionUtil.toMillis(rateLimit.getTimeUnit());
+                long expireAtMillis = 0;
+                Map<String, String> fields = new HashMap<>(4);
+                if (state instanceof SlidingWindowState) {
+                    SlidingWindowState window = (SlidingWindowState) state;
+                    fields.put(CURRENT_COUNT_FIELD, String.valueOf(window.getCurrentCount()));
+                    fields.put(PREVIOUS_COUNT_FIELD, String.valueOf(window.getPreviousCount()));
+                    fields.put(WINDOW_START_FIELD, String.valueOf(window.getWindowStart()));
+                    // The current window keeps weighing on the next one
+                    windowMillis *= 2;
+                } else if (state instanceof GcraState) {
+                    double arrivalTime = ((GcraState) state).getTheoreticalArrivalTime();
+                    fields.put(ARRIVAL_TIME_FIELD, String.valueOf(arrivalTime));
+                    // The state is equivalent to no state once the arrival time is behind the clock, reservations
+                    // may push it further ahead than the burst
+                    expireAtMillis = (long) Math.ceil(arrivalTime);
+                } else {
+                    BucketState bucket = (BucketState) state;
+                    fields.put(PERMITS_FIELD, String.valueOf(bucket.getAvailablePermits()));
+                    fields.put(TIMESTAMP_FIELD, String.valueOf(bucket.getLastRequestTimeStamp()));
+                    fields.put(REFILL_CREDIT_FIELD, String.valueOf(bucket.getRefillCredit()));
+                    // A bucket in debt for reservations takes longer than a time unit to be full again
+                    if (bucket.getAvailablePermits() < 0) {
+                        windowMillis += (long) Math.ceil(-bucket.getAvailablePermits() * (double) windowMillis / rateLimit.getMaxPermits());
+                    }
+                }
+                stringConnection.hMSet(key, fields);
+                if (expireAtMillis > 0) {
+                    stringConnection.pExpireAt(key, expireAtMillis);
+                } else {
+                    stringConnection.pExpire(key, windowMillis);
+                }
+            }
+            return null;
+        });
+        rateLimiterMetrics.recordStateSave(System.nanoTime() - start);
+    }
+
+    //State keys of the limit and, for sharded clients, of its sub-limits
+    public List<String> buildStateKeys(ClientRateLimitData rateLimit) {
+        return limitShardRouter.withShards(rateLimit).stream().map(this::buildStateKey).collect(Collectors.toList());
+    }
+
+    //Dropping the state resets the limit to its full capacity. One DEL per key, shards of a limit are in different cluster slots.
+    public void deleteAll(Collection<ClientRateLimitData> rateLimits) {
+        if (!rateLimits.isEmpty()) {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                rateLimits.forEach(rateLimit -> buildStateKeys(rateLimit).forEach(stringConnection::del));
+                return null;
+            });
+        }
+    }
+
+    private static String[] stateFields(ClientRateLimitData rateLimit) {
+        switch (rateLimit.getAlgorithm()) {
+            case SLIDING_WINDOW:
+                return SLIDING_WINDOW_FIELDS;
+            case GCRA:
+                return GCRA_FIELDS;
+            default:
+                return BUCKET_FIELDS;
+        }
+    }
+
+    // Bucket states written before the refill credit existed have no r field, their credit is 0
+    private static int requiredFieldCount(ClientRateLimitData rateLimit) {
+        String[] fields = stateFields(rateLimit);
+        return fields == BUCKET_FIELDS ? 2 : fields.length;
+    }
+
+    private static long parse(List<?> fields, int index) {
+        return Long.parseLong((String) fields.get(index));
+    }
+}
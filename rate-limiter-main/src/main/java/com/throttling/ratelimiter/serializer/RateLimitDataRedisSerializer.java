@@ -0,0 +1,111 @@
+package com.throttling.ratelimiter.serializer;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.util.RateLimitKeyUtil;
+
+//Binary encoding of ClientRateLimitData cache values, any other value is written as JSON.
+//Layout (version 1): magic, version, limitType, timeUnit and algorithm ordinals (0xFF for null), maxPermits and
+//burst as 8 byte longs, clientId and limitName as 2 byte length prefixed UTF-8. The id is rebuilt from the key parts.
+//Values written before this serializer (JSON, starting with '{') are still read, and replaced on their next write.
+//Enum constants must only ever be appended, ordinals are persisted.
+public class RateLimitDataRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte MAGIC = (byte) 0xB7;
+
+    private static final byte VERSION = 1;
+
+    private static final byte NULL_ORDINAL = (byte) 0xFF;
+
+    private static final int FIXED_LENGTH = 2 + 3 + 2 * Long.BYTES + 2 * Short.BYTES;
+
+    private static final LimitType[] LIMIT_TYPES = LimitType.values();
+
+    private static final TimeUnit[] TIME_UNITS = TimeUnit.values();
+
+    private static final RateLimitAlgorithm[] ALGORITHMS = RateLimitAlgorithm.values();
+
+    private final GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (!(value instanceof ClientRateLimitData)) {
+            return jsonSerializer.serialize(value);
+        }
+        ClientRateLimitData rateLimit = (ClientRateLimitData) value;
+        byte[] clientId = encode(rateLimit.getClientId());
+        byte[] limitName = encode(rateLimit.getLimitName());
+
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_LENGTH + clientId.length + limitName.length);
+        buffer.put(MAGIC).put(VERSION);
+        buffer.put(ordinal(rateLimit.getLimitType()));
+        buffer.put(ordinal(rateLimit.getTimeUnit()));
+        buffer.put(ordinal(rateLimit.getAlgorithm()));
+        buffer.putLong(rateLimit.getMaxPermits());
+        buffer.putLong(rateLimit.getBurst());
+        buffer.putShort((short) clientId.length).put(clientId);
+        buffer.putShort((short) limitName.length).put(limitName);
+        return buffer.array();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return jsonSerializer.deserialize(bytes);
+        }
+        if (bytes[1] != VERSION) {
+            throw new SerializationException("Unsupported rate limit value version " + bytes[1]);
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, bytes.length - 2);
+            ClientRateLimitData rateLimit = new ClientRateLimitData();
+            rateLimit.setLimitType(valueOf(LIMIT_TYPES, buffer.get()));
+            rateLimit.setTimeUnit(valueOf(TIME_UNITS, buffer.get()));
+            rateLimit.setAlgorithm(valueOf(ALGORITHMS, buffer.get()));
+            rateLimit.setMaxPermits(buffer.getLong());
+            rateLimit.setBurst(buffer.getLong());
+            rateLimit.setClientId(decode(buffer));
+            rateLimit.setLimitName(decode(buffer));
+            rateLimit.setId(RateLimitKeyUtil.buildRateLimitKey(rateLimit.getClientId(), rateLimit.getLimitType(), rateLimit.getLimitName()));
+            return rateLimit;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated rate limit value", e);
+        }
+    }
+
+    private static byte[] encode(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new SerializationException("Rate limit key part too long: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static String decode(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte ordinal(Enum<?> value) {
+        return value == null ? NULL_ORDINAL : (byte) value.ordinal();
+    }
+
+    private static <E> E valueOf(E[] values, byte ordinal) {
+        return ordinal == NULL_ORDINAL ? null : values[ordinal];
+    }
+}
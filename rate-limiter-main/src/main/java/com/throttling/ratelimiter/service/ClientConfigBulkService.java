@@ -0,0 +1,15 @@
+package com.throttling.ratelimiter.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.throttling.ratelimiter.pojo.response.BulkImportReport;
+
+public interface ClientConfigBulkService {
+
+  BulkImportReport importClients(InputStream inputStream) throws IOException;
+
+  void exportClients(OutputStream outputStream) throws IOException;
+
+}
@@ -1,9 +1,13 @@
 package com.throttling.ratelimiter.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
 
 import com.throttling.ratelimiter.pojo.request.ClientConfigRequest;
 import com.throttling.ratelimiter.pojo.response.BaseResponse;
+import com.throttling.ratelimiter.pojo.response.RateLimitPage;
 
 public interface ClientConfigService {
 
@@ -18,5 +22,15 @@ public interface ClientConfigService {
   List<?> getAllRateLimits();
 
   List<?> getClientLimits(String clientId);
+
+  RateLimitPage getRateLimitsPage(String cursor, int count);
+
+  RateLimitPage getClientLimitsPage(String clientId, String cursor, int count);
+
+  void streamRateLimits(OutputStream outputStream) throws IOException;
+
+  void streamClientLimits(String clientId, OutputStream outputStream) throws IOException;
+
+  Map<String, Long> getConfigCacheStats();
   
 }
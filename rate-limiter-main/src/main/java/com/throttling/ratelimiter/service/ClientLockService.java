@@ -1,13 +1,21 @@
 package com.throttling.ratelimiter.service;
 
+import java.util.List;
+
 public interface ClientLockService {
 
 //  void addClient(String clientId);
 
+  //Throws CannotAcquireLockException when the lock cannot be taken within ratelimiter.lock.wait-ms
   void acquireLock(String clientId);
 
   void releaseLock(String clientId);
 
+  //All or none of the locks, used for the sub-limits of sharded clients
+  void acquireLocks(List<String> lockNames);
+
+  void releaseLocks(List<String> lockNames);
+
 //  void removeClient(String clientId);
   
 }
@@ -1,10 +1,18 @@
 package com.throttling.ratelimiter.service;
 
+import java.util.List;
+
 import com.throttling.ratelimiter.pojo.request.ClientApiRequest;
 import com.throttling.ratelimiter.pojo.response.BaseResponse;
 
+import reactor.core.publisher.Mono;
+
 public interface ClientRateLimitingService {
 
   BaseResponse verifyApiLimit(ClientApiRequest clientApiRequest);
 
+  List<BaseResponse> verifyApiLimits(List<ClientApiRequest> clientApiRequests);
+
+  Mono<BaseResponse> verifyApiLimitReactive(ClientApiRequest clientApiRequest);
+
 }
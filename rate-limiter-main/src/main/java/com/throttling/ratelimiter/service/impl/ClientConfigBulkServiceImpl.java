@@ -0,0 +1,153 @@
+package com.throttling.ratelimiter.service.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.throttling.ratelimiter.cache.RateLimitConfigNearCache;
+import com.throttling.ratelimiter.converter.ClientConfigRequestConverter;
+import com.throttling.ratelimiter.pojo.model.ClientData;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.request.ClientConfigRequest;
+import com.throttling.ratelimiter.pojo.response.BulkImportReport;
+import com.throttling.ratelimiter.repository.RateLimitConfigBatchRepository;
+import com.throttling.ratelimiter.repository.RateLimitConfigScanRepository;
+import com.throttling.ratelimiter.service.ClientConfigBulkService;
+import com.throttling.ratelimiter.util.ValidationUtil;
+
+//Imports and exports client configurations as newline delimited JSON, one /configure-client request per line.
+//Imported lines are validated one by one and written in batches of clients, each batch in a single pipeline and
+//without the existence check done per client by /configure-client. Both directions keep only one batch in memory.
+@Service
+public class ClientConfigBulkServiceImpl implements ClientConfigBulkService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientConfigBulkServiceImpl.class);
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    @Autowired
+    private ClientConfigRequestConverter clientConfigRequestConverter;
+
+    @Autowired
+    private RateLimitConfigBatchRepository rateLimitConfigBatchRepository;
+
+    @Autowired
+    private RateLimitConfigScanRepository rateLimitConfigScanRepository;
+
+    @Autowired
+    private RateLimitConfigNearCache rateLimitConfigNearCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${ratelimiter.bulk.batch-size:500}")
+    private int batchSize;
+
+    @Override
+    public BulkImportReport importClients(InputStream inputStream) throws IOException {
+        BulkImportReport report = new BulkImportReport();
+        long start = System.nanoTime();
+        Map<String, ClientData> clients = new LinkedHashMap<>();
+        List<ClientRateLimitData> rateLimits = new ArrayList<>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            report.setLinesRead(report.getLinesRead() + 1);
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                ClientConfigRequest clientConfigRequest = objectMapper.readValue(line, ClientConfigRequest.class);
+                ValidationUtil.validateClientId(clientConfigRequest.getClientId());
+                if (clientConfigRequest.getLimits() != null) {
+                    clientConfigRequest.getLimits().forEach(ValidationUtil::validateLimitConfig);
+                }
+                rateLimits.addAll(clientConfigRequestConverter.convert(clientConfigRequest));
+                clients.put(clientConfigRequest.getClientId(), new ClientData(clientConfigRequest.getClientId()));
+            } catch (JsonProcessingException e) {
+                reject(report, e.getOriginalMessage());
+            } catch (IllegalArgumentException e) {
+                reject(report, e.getMessage());
+            }
+
+            if (clients.size() >= batchSize) {
+                writeBatch(report, clients, rateLimits);
+                LOGGER.debug("Bulk import: {} clients, {} limits written", report.getClientsImported(), report.getLimitsImported());
+            }
+        }
+        writeBatch(report, clients, rateLimits);
+
+        report.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        report.setLimitsPerSecond(report.getLimitsImported() * 1000 / Math.max(1, report.getDurationMillis()));
+        LOGGER.info("Bulk import: {} clients, {} limits imported and {} lines rejected in {} ms ({} limits/s)",
+                report.getClientsImported(), report.getLimitsImported(), report.getLinesRejected(),
+                report.getDurationMillis(), report.getLimitsPerSecond());
+        return report;
+    }
+
+    private void writeBatch(BulkImportReport report, Map<String, ClientData> clients, List<ClientRateLimitData> rateLimits) {
+        if (clients.isEmpty()) {
+            return;
+        }
+        rateLimitConfigBatchRepository.saveAll(clients.values(), rateLimits);
+        rateLimitConfigNearCache.invalidateClients(clients.keySet());
+        report.setClientsImported(report.getClientsImported() + clients.size());
+        report.setLimitsImported(report.getLimitsImported() + rateLimits.size());
+        clients.clear();
+        rateLimits.clear();
+    }
+
+    private void reject(BulkImportReport report, String reason) {
+        report.setLinesRejected(report.getLinesRejected() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add("line " + report.getLinesRead() + ": " + reason);
+        }
+    }
+
+    @Override
+    public void exportClients(OutputStream outputStream) throws IOException {
+        long start = System.nanoTime();
+        AtomicLong clientCount = new AtomicLong();
+        AtomicLong limitCount = new AtomicLong();
+        try {
+            rateLimitConfigScanRepository.scanClients(batchSize, batch -> {
+                try {
+                    for (Map.Entry<String, List<ClientRateLimitData>> client : batch.entrySet()) {
+                        outputStream.write(objectMapper.writeValueAsBytes(clientConfigRequestConverter.toRequest(client.getKey(), client.getValue())));
+                        outputStream.write('\n');
+                        limitCount.addAndGet(client.getValue().size());
+                    }
+                    outputStream.flush();
+                    clientCount.addAndGet(batch.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOGGER.info("Bulk export: {} clients, {} limits exported in {} ms ({} limits/s)", clientCount.get(), limitCount.get(),
+                durationMillis, limitCount.get() * 1000 / Math.max(1, durationMillis));
+    }
+}
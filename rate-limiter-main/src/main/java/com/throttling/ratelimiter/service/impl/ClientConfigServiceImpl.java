@@ -1,11 +1,16 @@
 package com.throttling.ratelimiter.service.impl;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
-
-import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+import org.redisson.api.RedissonClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,20 +20,35 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.throttling.ratelimiter.cache.ClientPresenceCache;
+import com.throttling.ratelimiter.cache.RateLimitCacheWarmer;
+import com.throttling.ratelimiter.cache.RateLimitConfigNearCache;
+import com.throttling.ratelimiter.cache.RateLimitPlan;
 import com.throttling.ratelimiter.constant.RateLimitData;
 import com.throttling.ratelimiter.converter.ClientConfigRequestConverter;
 import com.throttling.ratelimiter.enums.LimitType;
 import com.throttling.ratelimiter.enums.Status;
+import com.throttling.ratelimiter.metrics.RateLimiterMetrics;
 import com.throttling.ratelimiter.pojo.model.ClientData;
 import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
 import com.throttling.ratelimiter.pojo.request.ClientConfigRequest;
 import com.throttling.ratelimiter.pojo.request.ClientLimitsConfigRequest;
 import com.throttling.ratelimiter.pojo.response.BaseResponse;
+import com.throttling.ratelimiter.pojo.response.RateLimitPage;
 import com.throttling.ratelimiter.repository.ClientRateLimitsRepository;
 import com.throttling.ratelimiter.repository.ClientRepository;
+import com.throttling.ratelimiter.repository.RateLimitConfigBatchRepository;
+import com.throttling.ratelimiter.repository.RateLimitConfigScanRepository;
+import com.throttling.ratelimiter.repository.RateLimitStateRepository;
 import com.throttling.ratelimiter.service.ClientConfigService;
+import com.throttling.ratelimiter.util.RateLimitKeyUtil;
 import com.throttling.ratelimiter.util.ValidationUtil;
 
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 @Service
 public class ClientConfigServiceImpl implements ClientConfigService {
 	
@@ -47,30 +67,60 @@ public class ClientConfigServiceImpl implements ClientConfigService {
 	@Autowired
 	private ClientRateLimitsRepository clientRateLimitsRepository;
 
+	@Autowired
+	private RateLimitStateRepository rateLimitStateRepository;
+
 	@Autowired
 	private ClientConfigRequestConverter clientConfigRequestConverter;
-	
-	@PostConstruct
-	public void initializeCache() {
-	    List<ClientRateLimitData> rateLimits = getAllRateLimits();
-	    rateLimits.forEach(rateLimit -> {
-	        String key = buildRateLimitKey(rateLimit.getClientId(), rateLimit.getLimitType(), rateLimit.getLimitName());
-	        redisTemplate.opsForValue().set(cachePrefix + key, rateLimit);
-	    });
-	    logger.info("Rate limit cache initialized.");
-	}
 
+	@Autowired
+	private RateLimitConfigNearCache rateLimitConfigNearCache;
+
+	@Autowired
+	private ClientPresenceCache clientPresenceCache;
+
+	@Autowired
+	private RateLimitCacheWarmer rateLimitCacheWarmer;
+
+	@Autowired
+	private RateLimiterMetrics rateLimiterMetrics;
+
+	@Autowired
+	private RedissonClient redissonClient;
+
+	@Autowired
+	private RateLimitConfigScanRepository rateLimitConfigScanRepository;
+
+	@Autowired
+	private RateLimitConfigBatchRepository rateLimitConfigBatchRepository;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Value("${ratelimiter.listing.max-page-size:1000}")
+	private int maxPageSize;
+
+	@Value("${ratelimiter.listing.stream-batch-size:500}")
+	private int streamBatchSize;
+
+	@Value("${ratelimiter.bulk.batch-size:500}")
+	private int bulkBatchSize;
+
+	// Key prefix of ClientData hashes, see @RedisHash on ClientData
+	private static final String CLIENT_KEY_PREFIX = "ClientData:";
+	
 
 	public BaseResponse addOrUpdateRateLimits(ClientConfigRequest clientConfigRequest) {
 	    validateAndAddClient(clientConfigRequest);
 	    List<ClientRateLimitData> rateLimits = convertRateLimits(clientConfigRequest);
 	    saveOrUpdateRateLimits(rateLimits);
+	    rateLimitConfigNearCache.invalidateClient(clientConfigRequest.getClientId());
 	    return new BaseResponse(Status.SUCCESS, "Rate limits processed successfully");
 	}
 
 	private void validateAndAddClient(ClientConfigRequest clientConfigRequest) {
 	    ValidationUtil.validateClientId(clientConfigRequest.getClientId());
-	    if (!isClientPresent(clientConfigRequest.getClientId())) {
+	    if (!clientRepository.existsById(clientConfigRequest.getClientId())) {
 	        addClient(clientConfigRequest.getClientId());
 	    }
 	}
@@ -82,6 +132,8 @@ public class ClientConfigServiceImpl implements ClientConfigService {
 	public void saveOrUpdateRateLimits(List<ClientRateLimitData> rateLimits) {
 	    if (rateLimits != null && !rateLimits.isEmpty()) {
 	        rateLimits.forEach(this::saveOrUpdateRateLimit);
+	        // (Re)configured limits start with a full bucket
+	        rateLimitStateRepository.deleteAll(rateLimits);
 	    }
 	}
 
@@ -96,20 +148,18 @@ public class ClientConfigServiceImpl implements ClientConfigService {
 	        return new BaseResponse(Status.FAILURE, "Limits to delete cannot be null or empty.");
 	    }
 
-	    AtomicBoolean deletedAtLeastOne = new AtomicBoolean(false);
-	    limitsToDelete.forEach(limitConfig -> {
-	        ClientRateLimitData rateLimit = getRateLimitData(clientId, limitConfig.getLimitType(), limitConfig.getLimitName());
-	        if (rateLimit != null) {
-	            String key = buildRateLimitKey(clientId, limitConfig.getLimitType(), limitConfig.getLimitName());
-	            clientRateLimitsRepository.delete(rateLimit);
-	            redisTemplate.delete(cachePrefix + key);
-	            deletedAtLeastOne.set(true);
-	            logger.debug("Deleted cache for key: {}", key);
-	        }
-	    });
+	    List<String> ids = limitsToDelete.stream()
+	            .map(limitConfig -> RateLimitKeyUtil.buildRateLimitKey(clientId, limitConfig.getLimitType(), limitConfig.getLimitName()))
+	            .collect(Collectors.toList());
+	    List<ClientRateLimitData> rateLimits = rateLimitConfigScanRepository.findAllById(ids);
+	    if (rateLimits.isEmpty()) {
+	        return new BaseResponse(Status.FAILURE, "No matching rate limits found.");
+	    }
 
-	    return deletedAtLeastOne.get() ? new BaseResponse(Status.SUCCESS, "Rate limits deleted successfully.")
-	            : new BaseResponse(Status.FAILURE, "No matching rate limits found.");
+	    rateLimitConfigBatchRepository.deleteAll(Collections.emptyList(), rateLimits);
+	    rateLimitConfigNearCache.invalidateClient(clientId);
+	    logger.debug("Deleted {} rate limits and cache for client: {}", rateLimits.size(), clientId);
+	    return new BaseResponse(Status.SUCCESS, "Rate limits deleted successfully.");
 	}
 
 
@@ -118,34 +168,50 @@ public class ClientConfigServiceImpl implements ClientConfigService {
 	public BaseResponse removeClient(String clientId) {
 	    ValidationUtil.validateClientId(clientId);
 
-	    if (!isClientPresent(clientId)) {
+	    if (!clientRepository.existsById(clientId)) {
 	        return new BaseResponse(Status.FAILURE, "Client not found.");
 	    }
 
-	    List<ClientRateLimitData> rateLimits = clientRateLimitsRepository.findByClientId(clientId);
-	    rateLimits.forEach(rateLimit -> {
-	        String key = cachePrefix + buildRateLimitKey(rateLimit.getClientId(), rateLimit.getLimitType(), rateLimit.getLimitName());
-	        redisTemplate.delete(key);
-	    });
-
-	    clientRateLimitsRepository.deleteAll(rateLimits);
-	    clientRepository.deleteById(clientId);
+	    // One pipeline per batch of limits, then the client itself
+	    rateLimitConfigScanRepository.scan(clientId, bulkBatchSize,
+	            rateLimits -> rateLimitConfigBatchRepository.deleteAll(Collections.emptyList(), rateLimits));
+	    rateLimitConfigBatchRepository.deleteAll(Collections.singletonList(new ClientData(clientId)), Collections.emptyList());
+	    rateLimitConfigNearCache.invalidateClient(clientId);
 	    logger.debug("Deleted all rate limits and cache for client: {}", clientId);
 
 	    return new BaseResponse(Status.SUCCESS, "Client removed successfully.");
 	}
 
 
+	//Request path check, answered from ClientPresenceCache when it can. Admin operations ask the repository directly.
 	public boolean isClientPresent(String clientId) {
-		return clientRepository.existsById(clientId);
+		Boolean isPresent = clientPresenceCache.isPresent(clientId);
+		if (isPresent == null) {
+			isPresent = clientRepository.existsById(clientId);
+			clientPresenceCache.record(clientId, isPresent);
+		}
+		return isPresent;
+	}
+
+	//Same check as isClientPresent with a non-blocking EXISTS on the key written by ClientRepository
+	public Mono<Boolean> isClientPresentReactive(String clientId) {
+		Boolean isPresent = clientPresenceCache.isPresent(clientId);
+		if (isPresent != null) {
+			return Mono.just(isPresent);
+		}
+		return Mono.fromCompletionStage(redissonClient.getKeys().countExistsAsync(CLIENT_KEY_PREFIX + clientId))
+				.map(count -> count > 0)
+				.doOnNext(exists -> clientPresenceCache.record(clientId, exists));
 	}
 
 	@Override
 	public BaseResponse addClient(String clientId) {
-		if (isClientPresent(clientId)) {
+		if (clientRepository.existsById(clientId)) {
 			return new BaseResponse(Status.FAILURE, "Client already exists.");
 		}
 		clientRepository.save(new ClientData(clientId));
+		// Lets every node's presence filter know about the client, see ClientPresenceCache
+		rateLimitConfigNearCache.invalidateClient(clientId);
 		logger.info("Client Successfully Added");
 		return new BaseResponse(Status.SUCCESS, "Client added successfully.");
 	}
@@ -161,10 +227,65 @@ public class ClientConfigServiceImpl implements ClientConfigService {
 		return clientRateLimitsRepository.findByClientId(clientId);
 	}
 
+	@Override
+	public RateLimitPage getRateLimitsPage(String cursor, int count) {
+		ValidationUtil.validateCursor(cursor);
+		return rateLimitConfigScanRepository.findPage(null, cursor, pageSize(count));
+	}
+
+	@Override
+	public RateLimitPage getClientLimitsPage(String clientId, String cursor, int count) {
+		ValidationUtil.validateClientId(clientId);
+		ValidationUtil.validateCursor(cursor);
+		return rateLimitConfigScanRepository.findPage(clientId, cursor, pageSize(count));
+	}
+
+	//Page sizes are a hint passed to SSCAN, a page may hold slightly more or fewer limits
+	private int pageSize(int count) {
+		return Math.max(1, Math.min(count, maxPageSize));
+	}
+
+	@Override
+	public void streamRateLimits(OutputStream outputStream) throws IOException {
+		streamLimits(null, outputStream);
+	}
+
+	@Override
+	public void streamClientLimits(String clientId, OutputStream outputStream) throws IOException {
+		ValidationUtil.validateClientId(clientId);
+		streamLimits(clientId, outputStream);
+	}
+
+	//Writes one JSON document per line as batches are read, memory use does not depend on the number of limits
+	private void streamLimits(String clientId, OutputStream outputStream) throws IOException {
+		try {
+			rateLimitConfigScanRepository.scan(clientId, streamBatchSize, batch -> {
+				try {
+					for (ClientRateLimitData rateLimit : batch) {
+						outputStream.write(objectMapper.writeValueAsBytes(rateLimit));
+						outputStream.write('\n');
+					}
+					outputStream.flush();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	@Override
+	public Map<String, Long> getConfigCacheStats() {
+		Map<String, Long> stats = rateLimitConfigNearCache.getStats();
+		stats.putAll(rateLimitCacheWarmer.getProgress());
+		return stats;
+	}
+
 	
 	//Updating ratelimit value in cache and db
 	private void saveOrUpdateRateLimit(ClientRateLimitData rateLimit) {
-	    String key = cachePrefix + buildRateLimitKey(rateLimit.getClientId(),rateLimit.getLimitType(),rateLimit.getLimitName());
+	    String key = cachePrefix + RateLimitKeyUtil.buildRateLimitKey(rateLimit.getClientId(),rateLimit.getLimitType(),rateLimit.getLimitName());
 	    clientRateLimitsRepository.save(rateLimit);
 	    redisTemplate.opsForValue().set(key, rateLimit);
 	    logger.debug("Updated cache for key: {}", key);
@@ -173,20 +294,22 @@ public class ClientConfigServiceImpl implements ClientConfigService {
 
 	//Fetching all rate limits for client
 	public List<ClientRateLimitData> fetchApplicableRateLimits(String clientId, String methodName, String apiName) {
-	    List<ClientRateLimitData> rateLimits = new ArrayList<>();
-	    
-	    // Fetch and add limits
-	    addIfNotNull(rateLimits, fetchDefaultRateLimit(clientId));
-	    addIfNotNull(rateLimits, fetchMethodRateLimit(clientId, methodName));
-	    addIfNotNull(rateLimits, fetchAPIRateLimit(clientId, apiName));
-
-	    return rateLimits;
+	    long start = System.nanoTime();
+	    try {
+	        return getRateLimitPlan(clientId).resolve(methodName, apiName);
+	    } finally {
+	        rateLimiterMetrics.recordConfigFetch(System.nanoTime() - start);
+	    }
 	}
 
-	private void addIfNotNull(List<ClientRateLimitData> rateLimits, ClientRateLimitData limitData) {
-	    if (limitData != null) {
-	        rateLimits.add(limitData);
+	//Resolved in place when the client's plan is in the near-cache, otherwise loaded off the caller's thread
+	public Mono<List<ClientRateLimitData>> fetchApplicableRateLimitsReactive(String clientId, String methodName, String apiName) {
+	    RateLimitPlan plan = rateLimitConfigNearCache.getIfCached(clientId);
+	    if (plan == null) {
+	        return Mono.fromCallable(() -> fetchApplicableRateLimits(clientId, methodName, apiName))
+	                .subscribeOn(Schedulers.boundedElastic());
 	    }
+	    return Mono.just(plan.resolve(methodName, apiName));
 	}
     
 	//Fetching default rate limit for client
@@ -199,36 +322,59 @@ public class ClientConfigServiceImpl implements ClientConfigService {
 	    return getRateLimitData(clientId, LimitType.METHOD, methodName);
 	}
 
-	//Fetching API rate limit for client
+	//Fetching API rate limit for client, an API pattern only matches when apiName is the pattern itself
 	public ClientRateLimitData fetchAPIRateLimit(String clientId, String apiName) {
 	    return getRateLimitData(clientId, LimitType.API, apiName);
 	}
 
-	//Getting rate limit data from cache if exist if not get it from database
 	public ClientRateLimitData getRateLimitData(String clientId, LimitType limitType, String limitName) {
-	    String key = buildRateLimitKey(clientId, limitType, limitName);
-	    String redisKey = cachePrefix + key;
-
-	    // Try to fetch from Redis
-	    ClientRateLimitData cachedRateLimit = (ClientRateLimitData) redisTemplate.opsForValue().get(redisKey);
-	    if (cachedRateLimit != null) {
-	        logger.debug("Cache hit for key: {}", redisKey);
-	        return cachedRateLimit;
-	    }
+	    return getRateLimitPlan(clientId).getLimit(limitType, limitName);
+	}
 
-	    // Cache miss, fetch from DB
-	    ClientRateLimitData dbRateLimit = clientRateLimitsRepository.findById(key).orElse(null);
-	    if (dbRateLimit != null) {
-	        redisTemplate.opsForValue().set(redisKey, dbRateLimit);
+	//Getting the client's compiled limits from the local near-cache, compiling them on a miss
+	public RateLimitPlan getRateLimitPlan(String clientId) {
+	    // Cached plans are returned without building the capturing loader
+	    RateLimitPlan plan = rateLimitConfigNearCache.getIfCached(clientId);
+	    if (plan != null) {
+	        return plan;
 	    }
-	    return dbRateLimit;
+	    return rateLimitConfigNearCache.get(clientId, () -> RateLimitPlan.compile(loadClientRateLimits(clientId)));
 	}
 
-	
-	//building ratelimit key for redis cache
-	private String buildRateLimitKey(String clientId, LimitType limitType, String limitName) {
-	    return clientId + ":" + limitType.name() + ":" + limitName;
+	//Getting all limits of a client from the Redis cache, the ones missing there from the database
+	private List<ClientRateLimitData> loadClientRateLimits(String clientId) {
+	    List<String> ids = new ArrayList<>(rateLimitConfigScanRepository.findIdsByClientId(clientId));
+	    if (ids.isEmpty()) {
+	        return Collections.emptyList();
+	    }
+
+	    // Limit ids are the cache keys without prefix
+	    List<Object> cached = redisTemplate.opsForValue().multiGet(ids.stream().map(id -> cachePrefix + id).collect(Collectors.toList()));
+	    List<ClientRateLimitData> rateLimits = new ArrayList<>(ids.size());
+	    List<String> missingIds = new ArrayList<>();
+	    for (int i = 0; i < ids.size(); i++) {
+	        ClientRateLimitData cachedRateLimit = (ClientRateLimitData) cached.get(i);
+	        rateLimiterMetrics.recordRedisCacheLookup(cachedRateLimit != null);
+	        if (cachedRateLimit != null) {
+	            rateLimits.add(cachedRateLimit);
+	        } else {
+	            missingIds.add(ids.get(i));
+	        }
+	    }
+
+	    // Cache miss, fetch from DB
+	    if (!missingIds.isEmpty()) {
+	        Map<String, ClientRateLimitData> entries = new HashMap<>();
+	        for (ClientRateLimitData dbRateLimit : rateLimitConfigScanRepository.findAllById(missingIds)) {
+	            rateLimits.add(dbRateLimit);
+	            entries.put(cachePrefix + dbRateLimit.getId(), dbRateLimit);
+	        }
+	        if (!entries.isEmpty()) {
+	            redisTemplate.opsForValue().multiSet(entries);
+	        }
+	        logger.debug("Cache miss for {} of {} limits of client: {}", missingIds.size(), ids.size(), clientId);
+	    }
+	    return rateLimits;
 	}
-	
 
 }
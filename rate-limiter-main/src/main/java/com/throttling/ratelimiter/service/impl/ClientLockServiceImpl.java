@@ -1,10 +1,17 @@
 package com.throttling.ratelimiter.service.impl;
 
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.stereotype.Service;
+import com.throttling.ratelimiter.metrics.RateLimiterMetrics;
 import com.throttling.ratelimiter.service.ClientLockService;
 import org.slf4j.Logger;
 
@@ -19,6 +26,12 @@ public class ClientLockServiceImpl implements ClientLockService {
     @Autowired
     private RedissonClient redissonClient;
 
+    @Autowired
+    private RateLimiterMetrics rateLimiterMetrics;
+
+    @Value("${ratelimiter.lock.wait-ms:100}")
+    private long lockWaitMillis;
+
     @PostConstruct
     public void init() {
         // Optionally, you can log existing clients if needed
@@ -27,9 +40,8 @@ public class ClientLockServiceImpl implements ClientLockService {
 
     @Override
     public void acquireLock(String clientId) {
-        RLock lock = redissonClient.getLock(clientId);
-        lock.lock();
-        LOGGER.info("Lock acquired for client: {}", clientId);
+        tryLock(redissonClient.getLock(clientId), clientId);
+        LOGGER.debug("Lock acquired for client: {}", clientId);
     }
 
     @Override
@@ -37,10 +49,50 @@ public class ClientLockServiceImpl implements ClientLockService {
         RLock lock = redissonClient.getLock(clientId);
         if (lock.isHeldByCurrentThread()) {
             lock.unlock();
-            LOGGER.info("Lock released for client: {}", clientId);
+            LOGGER.debug("Lock released for client: {}", clientId);
         } else {
             LOGGER.warn("Attempt to release a lock not held by the current thread for client: {}", clientId);
         }
     }
 
+    @Override
+    public void acquireLocks(List<String> lockNames) {
+        tryLock(getMultiLock(lockNames), lockNames);
+        LOGGER.debug("Locks acquired: {}", lockNames);
+    }
+
+    //Waits at most ratelimiter.lock.wait-ms, a stalled Redis or a lock that is not released in time fails the request
+    //instead of piling up threads behind it
+    private void tryLock(RLock lock, Object lockNames) {
+        long start = System.nanoTime();
+        boolean isLocked;
+        try {
+            isLocked = lock.tryLock(lockWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Interrupted while waiting for lock: " + lockNames, e);
+        } catch (CancellationException e) {
+            // Redisson cancels its wait for the unlock message when the wait time runs out while subscribing
+            isLocked = false;
+        }
+        rateLimiterMetrics.recordLockWait(System.nanoTime() - start);
+        if (!isLocked) {
+            throw new CannotAcquireLockException("Lock not acquired within " + lockWaitMillis + " ms: " + lockNames);
+        }
+    }
+
+    @Override
+    public void releaseLocks(List<String> lockNames) {
+        getMultiLock(lockNames).unlock();
+        LOGGER.debug("Locks released: {}", lockNames);
+    }
+
+    private RLock getMultiLock(List<String> lockNames) {
+        RLock[] locks = new RLock[lockNames.size()];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = redissonClient.getLock(lockNames.get(i));
+        }
+        return redissonClient.getMultiLock(locks);
+    }
+
 }
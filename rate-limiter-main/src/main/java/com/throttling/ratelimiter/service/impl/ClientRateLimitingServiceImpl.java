@@ -1,109 +1,273 @@
 package com.throttling.ratelimiter.service.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+
+import com.throttling.ratelimiter.cache.ClientPresenceCache;
+import com.throttling.ratelimiter.coalescing.RequestCoalescer;
 import com.throttling.ratelimiter.constant.Message;
 import com.throttling.ratelimiter.dataconstructor.ClientDataConstructor;
+import com.throttling.ratelimiter.engine.RateLimitEngine;
 import com.throttling.ratelimiter.enums.Status;
-import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.fallback.LocalFallbackLimiter;
+import com.throttling.ratelimiter.fallback.RedisCircuitBreaker;
+import com.throttling.ratelimiter.metrics.RateLimiterMetrics;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
 import com.throttling.ratelimiter.pojo.request.ClientApiRequest;
 import com.throttling.ratelimiter.pojo.request.ClientConfigRequest;
 import com.throttling.ratelimiter.pojo.response.BaseResponse;
-import com.throttling.ratelimiter.repository.ClientRateLimitsRepository;
-import com.throttling.ratelimiter.service.ClientLockService;
 import com.throttling.ratelimiter.service.ClientRateLimitingService;
-import com.throttling.ratelimiter.util.TimeUnitConversionUtil;
 import com.throttling.ratelimiter.util.ValidationUtil;
 
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 @Service
 public class ClientRateLimitingServiceImpl implements ClientRateLimitingService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ClientRateLimitingServiceImpl.class);
 
     @Autowired
-    private ClientLockService clientLockService;
+    private ClientConfigServiceImpl clientConfigServiceImpl;
 
     @Autowired
-    private ClientConfigServiceImpl clientConfigServiceImpl;
+    private RateLimitEngine rateLimitEngine;
+
+    @Autowired
+    private RateLimiterMetrics rateLimiterMetrics;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    @Autowired
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Autowired
+    private LocalFallbackLimiter localFallbackLimiter;
+
+    @Autowired
+    private ClientPresenceCache clientPresenceCache;
 
     @Value("${ratelimiter.default.config.enabled:false}")
     private boolean isDefaultConfigEnabled;
 
-    @Override
-    public BaseResponse verifyApiLimit(ClientApiRequest clientApiRequest) {
+    // Responses are immutable, those without per-request content are shared
+    private static final BaseResponse ALLOWED = new BaseResponse(Status.SUCCESS, Message.SUCCESS);
 
-        String clientId = clientApiRequest.getClientId();
-        String methodName = clientApiRequest.getMethodName().name();
-        String apiName = clientApiRequest.getApiName();
+    private static final BaseResponse NO_LIMITS = new BaseResponse(Status.FAILURE, "Rate limit configuration missing. Request denied.");
 
-        // Acquire the lock for atomic operations
-        clientLockService.acquireLock(clientId);
+    private static final BaseResponse CLIENT_NOT_CONFIGURED = new BaseResponse(Status.FAILURE,
+            "Client not configured, and default configuration is disabled.");
 
+    private static final BaseResponse INVALID_CLIENT = new BaseResponse(Status.FAILURE, Message.CLIENT_ID_NULL);
+
+    private static final BaseResponse INVALID_COST = new BaseResponse(Status.FAILURE, Message.INVALID_COST);
+
+    // Kept in fields, a lambda capturing the request would be allocated on every call
+    private final Function<ClientApiRequest, BaseResponse> redisEvaluation = this::evaluateWithRedis;
+
+    private final Function<ClientApiRequest, BaseResponse> localEvaluation = this::evaluateLocally;
+
+    @Override
+    public BaseResponse verifyApiLimit(ClientApiRequest clientApiRequest) {
+        long start = System.nanoTime();
         try {
             // Validate the client ID
-            ValidationUtil.validateClientId(clientId);
+            ValidationUtil.validateClientId(clientApiRequest.getClientId());
+            ValidationUtil.validateCost(clientApiRequest);
+
+            // Decided by this node alone when Redis fails or the circuit around it is open
+            return redisCircuitBreaker.call(redisEvaluation, localEvaluation, clientApiRequest);
+        } finally {
+            rateLimiterMetrics.recordVerify(System.nanoTime() - start);
+        }
+    }
+
+    private BaseResponse evaluateWithRedis(ClientApiRequest clientApiRequest) {
+        BaseResponse rejection = checkClientConfigured(clientApiRequest.getClientId());
+        if (rejection != null) {
+            return rejection;
+        }
+        return toResponse(requestCoalescer.tryAcquire(clientApiRequest), clientApiRequest.getClientId(), clientApiRequest.getApiName());
+    }
+
+    private BaseResponse evaluateLocally(ClientApiRequest clientApiRequest) {
+        return evaluateLocally(clientApiRequest.getClientId(), clientApiRequest.getMethodName().name(), clientApiRequest.getApiName(),
+                clientApiRequest.getCost(), clientApiRequest.getMaxWaitMillis());
+    }
+
+    //Clients known to be absent are rejected as they would be with Redis up, the presence check is in memory only
+    private BaseResponse evaluateLocally(String clientId, String methodName, String apiName, long cost, long maxWaitMillis) {
+        if (Boolean.FALSE.equals(clientPresenceCache.isPresent(clientId))) {
+            return CLIENT_NOT_CONFIGURED;
+        }
+        return toResponse(localFallbackLimiter.tryAcquire(clientId, methodName, apiName, cost, maxWaitMillis), clientId, apiName);
+    }
 
-            // Check if the client exists
-            if (!clientConfigServiceImpl.isClientPresent(clientId)) {
-                LOGGER.info("Client ID {} not found.", clientId);
+    //Clients are checked once per batch and the engine evaluates all accepted entries together
+    @Override
+    public List<BaseResponse> verifyApiLimits(List<ClientApiRequest> clientApiRequests) {
+        return rateLimiterMetrics.timeVerifyBatch(() -> redisCircuitBreaker.call(() -> evaluateApiLimits(clientApiRequests),
+                () -> fallbackApiLimits(clientApiRequests)));
+    }
 
-                if (isDefaultConfigEnabled) {
-                    LOGGER.info("Default configuration is enabled. Adding client ID {} to DB with default configuration.", clientId);
+    private List<BaseResponse> evaluateApiLimits(List<ClientApiRequest> clientApiRequests) {
+        BaseResponse[] responses = new BaseResponse[clientApiRequests.size()];
+        Map<String, BaseResponse> rejectedClients = new HashMap<>();
+        Set<String> acceptedClients = new HashSet<>();
+        List<ClientApiRequest> acceptedRequests = new ArrayList<>();
+        List<Integer> acceptedPositions = new ArrayList<>();
 
-                    // Add client to DB with default limits
-                    ClientConfigRequest defaultConfig = ClientDataConstructor.constructDefaultClientConfig(clientId);
-                    clientConfigServiceImpl.addOrUpdateRateLimits(defaultConfig);
+        for (int i = 0; i < clientApiRequests.size(); i++) {
+            ClientApiRequest request = clientApiRequests.get(i);
+            String clientId = request.getClientId();
 
+            if (!acceptedClients.contains(clientId) && !rejectedClients.containsKey(clientId)) {
+                BaseResponse rejection = validateAndCheckClient(clientId);
+                if (rejection == null) {
+                    acceptedClients.add(clientId);
                 } else {
-                    LOGGER.warn("Default configuration is disabled. Rejecting request for client ID {}.", clientId);
-                    return new BaseResponse(Status.FAILURE, "Client not configured, and default configuration is disabled.");
+                    rejectedClients.put(clientId, rejection);
                 }
             }
 
-            long currentTimestamp = System.currentTimeMillis();
+            if (acceptedClients.contains(clientId)) {
+                if (validateCost(request) != null) {
+                    responses[i] = INVALID_COST;
+                    continue;
+                }
+                acceptedRequests.add(request);
+                acceptedPositions.add(i);
+            } else {
+                responses[i] = rejectedClients.get(clientId);
+            }
+        }
 
-            // Fetch and validate applicable limits
-            List<ClientRateLimitData> applicableApiLimits = clientConfigServiceImpl.fetchApplicableRateLimits(clientId, methodName,apiName);
+        if (!acceptedRequests.isEmpty()) {
+            List<RateLimitDecision> decisions = rateLimitEngine.tryAcquireAll(acceptedRequests);
+            for (int i = 0; i < decisions.size(); i++) {
+                ClientApiRequest request = acceptedRequests.get(i);
+                responses[acceptedPositions.get(i)] = toResponse(decisions.get(i), request.getClientId(), request.getApiName());
+            }
+        }
+        return Arrays.asList(responses);
+    }
 
-            // Handle empty rate limits case
-            if (applicableApiLimits.isEmpty()) {
-                LOGGER.error("No applicable rate limits found for client ID {} and API {}. Request denied.", clientId, apiName);
-                return new BaseResponse(Status.FAILURE, "Rate limit configuration missing. Request denied.");
+    private List<BaseResponse> fallbackApiLimits(List<ClientApiRequest> clientApiRequests) {
+        List<BaseResponse> responses = new ArrayList<>(clientApiRequests.size());
+        for (ClientApiRequest request : clientApiRequests) {
+            BaseResponse rejection = validateClient(request.getClientId());
+            if (rejection == null) {
+                rejection = validateCost(request);
             }
+            responses.add(rejection != null ? rejection : evaluateLocally(request));
+        }
+        return responses;
+    }
 
-            // Process rate limits
-            for (ClientRateLimitData clientApiLimit : applicableApiLimits) {
-                long elapsedTimeMillis = currentTimestamp - clientApiLimit.getLastRequestTimeStamp();
-                double elapsedTimeUnits = TimeUnitConversionUtil.convert(elapsedTimeMillis, clientApiLimit.getTimeUnit());
+    //Same checks as verifyApiLimit without waiting on Redis, the default configuration is created off the caller's thread
+    @Override
+    public Mono<BaseResponse> verifyApiLimitReactive(ClientApiRequest clientApiRequest) {
+        String clientId = clientApiRequest.getClientId();
+        String methodName = clientApiRequest.getMethodName().name();
+        String apiName = clientApiRequest.getApiName();
+        long cost = clientApiRequest.getCost();
+        long maxWaitMillis = clientApiRequest.getMaxWaitMillis();
 
-                long updatedAvailablePermits = (long) Math.min(
-                        clientApiLimit.getAvailablePermits() + elapsedTimeUnits * clientApiLimit.getMaxPermits(),
-                        clientApiLimit.getMaxPermits());
+        // Validate the client ID
+        ValidationUtil.validateClientId(clientId);
+        ValidationUtil.validateCost(clientApiRequest);
 
-                if (updatedAvailablePermits < 1) {
-                    LOGGER.warn("Rate limit breached for client {} on limit {}", clientId, clientApiLimit.getLimitName());
-                    return new BaseResponse(Status.FAILURE, "Rate Limit reached for " + clientId);
-                }
+        Mono<BaseResponse> verification = redisCircuitBreaker.callReactive(() -> clientConfigServiceImpl.isClientPresentReactive(clientId)
+                .flatMap(isPresent -> {
+                    if (!isPresent) {
+                        return Mono.fromCallable(() -> Optional.ofNullable(checkClientConfigured(clientId)))
+                                .subscribeOn(Schedulers.boundedElastic());
+                    }
+                    return Mono.just(Optional.<BaseResponse>empty());
+                })
+                .flatMap(rejection -> rejection.isPresent() ? Mono.just(rejection.get())
+                        : rateLimitEngine.tryAcquireReactive(clientId, methodName, apiName, cost, maxWaitMillis)
+                                .map(decision -> toResponse(decision, clientId, apiName))),
+                () -> Mono.fromSupplier(() -> evaluateLocally(clientId, methodName, apiName, cost, maxWaitMillis)));
+        return rateLimiterMetrics.timeVerifyReactive(verification);
+    }
 
-                // Update the limit usage
-                updatedAvailablePermits--;
-                clientApiLimit.setAvailablePermits(updatedAvailablePermits);
-                clientApiLimit.setLastRequestTimeStamp(currentTimestamp);
-            }
+    private BaseResponse validateAndCheckClient(String clientId) {
+        BaseResponse rejection = validateClient(clientId);
+        return rejection != null ? rejection : checkClientConfigured(clientId);
+    }
 
-            // Save updated limits using the service method
-            clientConfigServiceImpl.saveOrUpdateRateLimits(applicableApiLimits);
+    private BaseResponse validateClient(String clientId) {
+        try {
+            ValidationUtil.validateClientId(clientId);
+        } catch (IllegalArgumentException e) {
+            return INVALID_CLIENT;
+        }
+        return null;
+    }
+
+    private BaseResponse validateCost(ClientApiRequest request) {
+        try {
+            ValidationUtil.validateCost(request);
+        } catch (IllegalArgumentException e) {
+            return INVALID_COST;
+        }
+        return null;
+    }
 
-            return new BaseResponse(Status.SUCCESS, Message.SUCCESS);
+    //Returns a rejection when the client is unknown and cannot be configured with defaults, null otherwise
+    private BaseResponse checkClientConfigured(String clientId) {
+        if (clientConfigServiceImpl.isClientPresent(clientId)) {
+            return null;
+        }
+        LOGGER.debug("Client ID {} not found.", clientId);
 
-        } finally {
-            // Release the lock only if it was acquired
-            clientLockService.releaseLock(clientId);
+        if (isDefaultConfigEnabled) {
+            LOGGER.info("Default configuration is enabled. Adding client ID {} to DB with default configuration.", clientId);
+
+            // Add client to DB with default limits
+            ClientConfigRequest defaultConfig = ClientDataConstructor.constructDefaultClientConfig(clientId);
+            clientConfigServiceImpl.addOrUpdateRateLimits(defaultConfig);
+            return null;
+        }
+
+        LOGGER.debug("Default configuration is disabled. Rejecting request for client ID {}.", clientId);
+        return CLIENT_NOT_CONFIGURED;
+    }
+
+    private BaseResponse toResponse(RateLimitDecision decision, String clientId, String apiName) {
+        rateLimiterMetrics.recordDecision(decision);
+        switch (decision.getOutcome()) {
+            case NO_LIMITS:
+                LOGGER.error("No applicable rate limits found for client ID {} and API {}. Request denied.", clientId, apiName);
+                return NO_LIMITS;
+
+            case DENIED:
+                // Guarded, the varargs array would be allocated even with DEBUG off
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Rate limit breached for client {} on {} limit {}, retry after {} ms", clientId, decision.getLimitType(),
+                            decision.getLimitName(), decision.getRetryAfterMillis());
+                }
+                return new BaseResponse(Status.FAILURE, "Rate Limit reached for " + clientId, decision.getRetryAfterMillis());
+
+            default:
+                // Reserved permits are used after the wait
+                return decision.getRetryAfterMillis() > 0
+                        ? new BaseResponse(Status.SUCCESS, Message.SUCCESS, decision.getRetryAfterMillis()) : ALLOWED;
         }
     }
 }
@@ -0,0 +1,106 @@
+package com.throttling.ratelimiter.sharding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.util.RateLimitKeyUtil;
+
+//Splits the limits of very high-volume clients (ratelimiter.sharding.client-ids) into shard-count sub-limits with their
+//own state key, so that their traffic is spread over several keys instead of serializing on one. The
+//permits (and GCRA burst) of a limit are divided between its shards, so the shards together allow exactly the
+//configured limit. A request uses one shard picked at random, and a shard that ran dry borrows from the others
+//by retrying the request on the next shards (ratelimiter.sharding.probes) before it is rejected.
+@Component
+public class LimitShardRouter {
+
+    @Value("${ratelimiter.sharding.client-ids:}")
+    private String[] shardedClientIds;
+
+    @Value("${ratelimiter.sharding.shard-count:8}")
+    private int shardCount;
+
+    @Value("${ratelimiter.sharding.probes:1}")
+    private int probes;
+
+    private Set<String> shardedClients;
+
+    // Sub-limits of each limit, dropped together with the limit's plan (keys are compared by identity)
+    private final Cache<ClientRateLimitData, ClientRateLimitData[]> shardLimits = Caffeine.newBuilder().weakKeys().build();
+
+    @PostConstruct
+    public void init() {
+        shardedClients = shardCount > 1 ? new HashSet<>(Arrays.asList(shardedClientIds)) : Collections.emptySet();
+        probes = Math.max(0, Math.min(probes, shardCount - 1));
+    }
+
+    public boolean isSharded(String clientId) {
+        return shardedClients.contains(clientId);
+    }
+
+    public int pickShard() {
+        return ThreadLocalRandom.current().nextInt(shardCount);
+    }
+
+    //Further shards tried after the first one denied a request
+    public int getProbes() {
+        return probes;
+    }
+
+    //Sub-limits the request takes its permits from, shard may be any int and is taken modulo the shard count
+    public List<ClientRateLimitData> forShard(List<ClientRateLimitData> rateLimits, int shard) {
+        List<ClientRateLimitData> shardRateLimits = new ArrayList<>(rateLimits.size());
+        for (ClientRateLimitData rateLimit : rateLimits) {
+            ClientRateLimitData[] shards = shardLimits.get(rateLimit, this::split);
+            shardRateLimits.add(shards[Math.floorMod(shard, shards.length)]);
+        }
+        return shardRateLimits;
+    }
+
+    //The limit itself and, for sharded clients, all of its sub-limits, e.g. to reset their state
+    public List<ClientRateLimitData> withShards(ClientRateLimitData rateLimit) {
+        if (!isSharded(rateLimit.getClientId())) {
+            return Collections.singletonList(rateLimit);
+        }
+        List<ClientRateLimitData> rateLimits = new ArrayList<>(Arrays.asList(shardLimits.get(rateLimit, this::split)));
+        rateLimits.add(rateLimit);
+        return rateLimits;
+    }
+
+    // Every shard gets at least one permit (and one burst request), so small limits use fewer shards
+    private ClientRateLimitData[] split(ClientRateLimitData rateLimit) {
+        long capacity = rateLimit.getMaxPermits();
+        if (rateLimit.getAlgorithm() == RateLimitAlgorithm.GCRA) {
+            capacity = Math.min(capacity, rateLimit.getBurst());
+        }
+        int shards = (int) Math.max(1, Math.min(shardCount, capacity));
+
+        ClientRateLimitData[] shardRateLimits = new ClientRateLimitData[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            ClientRateLimitData shardRateLimit = new ClientRateLimitData(rateLimit.getClientId(), rateLimit.getLimitType(),
+                    rateLimit.getLimitName(), rateLimit.getTimeUnit(), share(rateLimit.getMaxPermits(), shards, shard),
+                    rateLimit.getAlgorithm());
+            shardRateLimit.setBurst(share(rateLimit.getBurst(), shards, shard));
+            shardRateLimit.setId(RateLimitKeyUtil.buildShardKey(rateLimit.getClientId(), rateLimit.getLimitType(), rateLimit.getLimitName(), shard));
+            shardRateLimits[shard] = shardRateLimit;
+        }
+        return shardRateLimits;
+    }
+
+    private static long share(long total, int shards, int shard) {
+        return total / shards + (shard < total % shards ? 1 : 0);
+    }
+}
@@ -0,0 +1,27 @@
+package com.throttling.ratelimiter.util;
+
+import com.throttling.ratelimiter.enums.LimitType;
+
+public class RateLimitKeyUtil {
+
+    // Set once at startup from ratelimiter.redis.hash-tags, see RedisConfig
+    private static volatile boolean isHashTagged;
+
+    public static void setHashTagged(boolean hashTagged) {
+        isHashTagged = hashTagged;
+    }
+
+    //building ratelimit key (clientId:limitType:limitName) used by cache and state entries. With hash tags the
+    //clientId is written as {clientId}, so that all keys of a client are in the same Redis Cluster slot.
+    public static String buildRateLimitKey(String clientId, LimitType limitType, String limitName) {
+        return (isHashTagged ? "{" + clientId + "}" : clientId) + ":" + limitType.name() + ":" + limitName;
+    }
+
+    //key of a sub-limit of a sharded client, with hash tags each shard has its own slot so shards spread over the cluster
+    public static String buildShardKey(String clientId, LimitType limitType, String limitName, int shard) {
+        if (isHashTagged) {
+            return "{" + clientId + "#" + shard + "}:" + limitType.name() + ":" + limitName;
+        }
+        return buildRateLimitKey(clientId, limitType, limitName) + "#" + shard;
+    }
+}
@@ -12,30 +12,30 @@ public class TimeUnitConversionUtil {
     private static final long MILLIS_IN_WEEK = 7 * MILLIS_IN_DAY;
     private static final long MILLIS_IN_MONTH = 30 * MILLIS_IN_DAY;
 
-
-    public static double convert(long milliseconds, TimeUnit timeUnit) {
+    //length of one time unit in milliseconds
+    public static long toMillis(TimeUnit timeUnit) {
         if (timeUnit == null) {
             throw new IllegalArgumentException(Message.INVALID_TIME_UNIT);
         }
 
         switch (timeUnit) {
             case SEC:
-                return milliseconds / (double) MILLIS_IN_SECOND;
+                return MILLIS_IN_SECOND;
 
             case MIN:
-                return milliseconds / (double) MILLIS_IN_MINUTE;
+                return MILLIS_IN_MINUTE;
 
             case HOUR:
-                return milliseconds / (double) MILLIS_IN_HOUR;
-                
+                return MILLIS_IN_HOUR;
+
             case DAY:
-            	return milliseconds / (double) MILLIS_IN_DAY;
+                return MILLIS_IN_DAY;
 
             case WEEK:
-                return milliseconds / (double) MILLIS_IN_WEEK;
+                return MILLIS_IN_WEEK;
 
             case MONTH:
-                return milliseconds / (double) MILLIS_IN_MONTH;
+                return MILLIS_IN_MONTH;
 
             default:
                 throw new IllegalArgumentException(Message.INVALID_TIME_UNIT);
@@ -0,0 +1,55 @@
+package com.throttling.ratelimiter.util;
+
+import com.throttling.ratelimiter.pojo.model.BucketState;
+
+//Token bucket refill in integer arithmetic. The progress towards the next permit is kept as refill credit,
+//counted in 1/windowMillis of a permit (one millisecond adds maxPermits credit), so that frequent requests do
+//not drop the fractional part of the refill.
+public class TokenBucketRefillUtil {
+
+    //State of the bucket refilled up to now, null state being a full bucket. A clock going backwards refills nothing
+    //and leaves the timestamp where it was, so that the same time is never credited twice.
+    public static BucketState refill(BucketState state, long maxPermits, long windowMillis, long now) {
+        if (state == null) {
+            return new BucketState(maxPermits, now, 0);
+        }
+        if (now < state.getLastRequestTimeStamp()) {
+            return new BucketState(state.getAvailablePermits(), state.getLastRequestTimeStamp(), state.getRefillCredit());
+        }
+        long elapsedMillis = now - state.getLastRequestTimeStamp();
+        long availablePermits = state.getAvailablePermits();
+        if (elapsedMillis >= windowMillis) {
+            if (availablePermits >= 0) {
+                return new BucketState(maxPermits, now, 0);
+            }
+            // In debt for reservations, whole time units refill maxPermits each
+            availablePermits += elapsedMillis / windowMillis * maxPermits;
+            elapsedMillis %= windowMillis;
+        }
+
+        // elapsedMillis * maxPermits split so that no product exceeds windowMillis squared
+        long credit = state.getRefillCredit() + elapsedMillis * (maxPermits % windowMillis);
+        availablePermits += elapsedMillis * (maxPermits / windowMillis) + credit / windowMillis;
+        if (availablePermits >= maxPermits) {
+            return new BucketState(maxPermits, now, 0);
+        }
+        return new BucketState(availablePermits, now, credit % windowMillis);
+    }
+
+    //Milliseconds before permits are available in a refilled bucket, 0 when they are now. Negative available permits
+    //are a debt left by reservations.
+    public static long waitMillis(BucketState refilled, long permits, long maxPermits, long windowMillis) {
+        long missingPermits = permits - refilled.getAvailablePermits();
+        if (missingPermits <= 0) {
+            return 0;
+        }
+        // ceil((missingPermits * windowMillis - credit) / maxPermits), whole multiples of maxPermits taken out first
+        long remainingPermits = missingPermits % maxPermits;
+        long wait = missingPermits / maxPermits * windowMillis;
+        if (remainingPermits > (Long.MAX_VALUE - windowMillis) / windowMillis) {
+            // Beyond several billion permits per time unit, approximated
+            return wait + (long) Math.ceil(((double) remainingPermits * windowMillis - refilled.getRefillCredit()) / maxPermits);
+        }
+        return wait - Math.floorDiv(refilled.getRefillCredit() - remainingPermits * windowMillis, maxPermits);
+    }
+}
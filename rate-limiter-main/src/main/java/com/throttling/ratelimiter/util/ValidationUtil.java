@@ -1,5 +1,9 @@
 package com.throttling.ratelimiter.util;
 
+import com.throttling.ratelimiter.constant.Message;
+import com.throttling.ratelimiter.pojo.request.ClientApiRequest;
+import com.throttling.ratelimiter.pojo.request.ClientLimitsConfigRequest;
+
 public class ValidationUtil {
 	
 	public static void validateClientId(String clientId) {
@@ -7,4 +11,26 @@ public class ValidationUtil {
 			throw new IllegalArgumentException("Client ID must not be null or empty");
 		}
 	}
+
+	public static void validateCost(ClientApiRequest clientApiRequest) {
+		if (clientApiRequest.getCost() <= 0 || clientApiRequest.getMaxWaitMillis() < 0) {
+			throw new IllegalArgumentException(Message.INVALID_COST);
+		}
+	}
+
+	public static void validateCursor(String cursor) {
+		if (cursor == null || !cursor.matches("\\d+")) {
+			throw new IllegalArgumentException("Cursor must be a value returned by a previous page, or 0 to start");
+		}
+	}
+
+	public static void validateLimitConfig(ClientLimitsConfigRequest limitConfig) {
+		if (limitConfig == null || limitConfig.getLimitType() == null || limitConfig.getLimitName() == null) {
+			throw new IllegalArgumentException("Limit type and limit name must not be null");
+		}
+		if (limitConfig.getTimeIntervalLimit() == null || limitConfig.getTimeIntervalLimit().getTimeUnit() == null
+				|| limitConfig.getTimeIntervalLimit().getMaxRequests() <= 0) {
+			throw new IllegalArgumentException("Limit " + limitConfig.getLimitName() + " needs a time unit and a positive max requests");
+		}
+	}
 }
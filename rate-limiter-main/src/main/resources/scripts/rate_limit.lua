@@ -0,0 +1,238 @@
+-- Checks and consumes or reserves permits from the limits of one client for a sequence of requests.
+-- KEYS                      : limit state hashes
+--                             TOKEN_BUCKET   p = available permits, t = last request timestamp, r = refill credit
+--                             SLIDING_WINDOW c = current window count, l = previous window count, w = window start
+--                             GCRA           a = theoretical arrival time
+-- ARGV[1]                   : current timestamp in milliseconds
+-- ARGV[4i-2 .. 4i+1]        : max permits, time unit length in milliseconds, algorithm and burst of KEYS[i]
+-- ARGV[4 * #KEYS + 2]       : number of requests, followed for each request by the number of applicable
+--                             limits, its cost in permits, the longest wait it accepts for a reservation in
+--                             milliseconds (0 for none) and the indexes of its limits in KEYS
+-- Returns two entries per request: 0 when allowed, otherwise the index of the key without enough permits,
+-- followed by a wait in milliseconds: when allowed, the wait before the reserved permits may be used; when
+-- denied, the wait after which the request could pass, 0 if it never can.
+-- Each request takes its cost from all of its limits or from none of them; state is read once and written
+-- once per key, after every request has been evaluated. Token buckets reserve by going into debt and GCRA by
+-- pushing the arrival time further ahead; sliding windows count requests when they are made and cannot reserve.
+
+-- floor(a * b / m) and a * b % m for integers 0 <= a, b < m <= 2^32. Lua numbers are doubles, exact up to 2^53,
+-- so b is split in 16 bit halves to keep every intermediate product below 2^48.
+local function mulDivMod(a, b, m)
+  local high = math.floor(b / 65536)
+  local highProduct = a * high
+  local shifted = highProduct % m * 65536
+  local lowProduct = a * (b % 65536)
+  local quotient = math.floor(highProduct / m) * 65536 + math.floor(shifted / m) + math.floor(lowProduct / m)
+  local remainder = shifted % m + lowProduct % m
+  if remainder >= m then
+    quotient = quotient + 1
+    remainder = remainder - m
+  end
+  return quotient, remainder
+end
+
+-- Token bucket refilled up to now in integer arithmetic, returns the available permits, the refill credit (the
+-- progress towards the next permit in 1/window of a permit, carried over so that frequent requests do not lose it)
+-- and the timestamp to store, which never goes backwards so that the same time is never credited twice
+local function refill(permits, timestamp, credit, now, maxPermits, window)
+  if now < timestamp then
+    return permits, credit, timestamp
+  end
+  local elapsed = now - timestamp
+  if elapsed >= window then
+    if permits >= 0 then
+      return maxPermits, 0, now
+    end
+    -- In debt for reservations, whole time units refill maxPermits each
+    local units = math.floor(elapsed / window)
+    permits = permits + units * maxPermits
+    elapsed = elapsed - units * window
+  end
+  local gained, remainder = mulDivMod(elapsed, maxPermits % window, window)
+  remainder = remainder + credit
+  if remainder >= window then
+    gained = gained + 1
+    remainder = remainder - window
+  end
+  local available = permits + elapsed * math.floor(maxPermits / window) + gained
+  if available >= maxPermits then
+    return maxPermits, 0, now
+  end
+  return available, remainder, now
+end
+
+local now = tonumber(ARGV[1])
+local algorithms = {}
+local windows = {}
+local limits = {}
+local bursts = {}
+local permits = {}
+local counts = {}
+local previousCounts = {}
+local windowStarts = {}
+local arrivalTimes = {}
+local emissionIntervals = {}
+local tolerances = {}
+local credits = {}
+local timestamps = {}
+local touched = {}
+
+for i = 1, #KEYS do
+  local maxPermits = tonumber(ARGV[4 * i - 2])
+  local window = tonumber(ARGV[4 * i - 1])
+  local algorithm = ARGV[4 * i]
+  algorithms[i] = algorithm
+  windows[i] = window
+  limits[i] = maxPermits
+  bursts[i] = tonumber(ARGV[4 * i + 1])
+
+  if algorithm == 'GCRA' then
+    -- Requests are spaced by the emission interval, the theoretical arrival time may run ahead
+    -- of the clock by the burst tolerance
+    local emissionInterval = window / maxPermits
+    local tolerance = emissionInterval * (bursts[i] - 1)
+    local arrivalTime = now
+
+    local state = redis.call('HGET', KEYS[i], 'a')
+    if state then
+      arrivalTime = math.max(tonumber(state), now)
+    end
+
+    arrivalTimes[i] = arrivalTime
+    emissionIntervals[i] = emissionInterval
+    tolerances[i] = tolerance
+  elseif algorithm == 'SLIDING_WINDOW' then
+    -- Windows are aligned on multiples of their length, the previous one weighs in proportion
+    -- to the part of it still covered by the sliding window
+    local windowStart = now - now % window
+    local count = 0
+    local previousCount = 0
+
+    local state = redis.call('HMGET', KEYS[i], 'c', 'l', 'w')
+    if state[1] and state[2] and state[3] then
+      local stateStart = tonumber(state[3])
+      if stateStart == windowStart then
+        count = tonumber(state[1])
+        previousCount = tonumber(state[2])
+      elseif stateStart == windowStart - window then
+        previousCount = tonumber(state[1])
+      end
+    end
+
+    counts[i] = count
+    previousCounts[i] = previousCount
+    windowStarts[i] = windowStart
+    permits[i] = maxPermits - count - previousCount * (window - (now - windowStart)) / window
+  else
+    local available = maxPermits
+    local credit = 0
+    local timestamp = now
+
+    local state = redis.call('HMGET', KEYS[i], 'p', 't', 'r')
+    if state[1] and state[2] then
+      available, credit, timestamp = refill(tonumber(state[1]), tonumber(state[2]), tonumber(state[3] or 0), now, maxPermits, window)
+    end
+
+    credits[i] = credit
+    timestamps[i] = timestamp
+    permits[i] = available
+  end
+end
+
+-- Milliseconds before cost permits of KEYS[i] are available, 0 when they are now, -1 when they never are
+local function waitFor(i, cost)
+  local maxPermits = limits[i]
+  local window = windows[i]
+  if algorithms[i] == 'GCRA' then
+    if cost > bursts[i] then
+      return -1
+    end
+    -- The last of the permits is scheduled cost - 1 emission intervals after the first one
+    local wait = arrivalTimes[i] + (cost - 1) * emissionIntervals[i] - tolerances[i] - now
+    return wait > 0 and math.ceil(wait) or 0
+  end
+  if cost > maxPermits then
+    return -1
+  end
+  if permits[i] >= cost then
+    return 0
+  end
+  if algorithms[i] == 'SLIDING_WINDOW' then
+    -- The weight of the previous window falls until the cost fits, or the current window has to become
+    -- the previous one first
+    local elapsed = now - windowStarts[i]
+    local slack = maxPermits - counts[i] - cost
+    if slack >= 0 then
+      return math.ceil(window - slack * window / previousCounts[i] - elapsed)
+    end
+    return math.ceil(2 * window - (maxPermits - cost) * window / counts[i] - elapsed)
+  end
+  -- Refill of the missing permits, less the refill credit already gathered
+  return math.ceil(((cost - permits[i]) * window - credits[i]) / maxPermits)
+end
+
+local results = {}
+local position = 4 * #KEYS + 2
+
+for r = 1, tonumber(ARGV[position]) do
+  local count = tonumber(ARGV[position + 1])
+  local cost = tonumber(ARGV[position + 2])
+  local maxWait = tonumber(ARGV[position + 3])
+  local denied = 0
+  local wait = 0
+
+  for j = 1, count do
+    local i = tonumber(ARGV[position + 3 + j])
+    local limitWait = waitFor(i, cost)
+    if limitWait < 0 or limitWait > maxWait or (limitWait > 0 and algorithms[i] == 'SLIDING_WINDOW') then
+      denied = i
+      wait = math.max(limitWait, 0)
+      break
+    end
+    wait = math.max(wait, limitWait)
+  end
+
+  if denied == 0 then
+    for j = 1, count do
+      local i = tonumber(ARGV[position + 3 + j])
+      if arrivalTimes[i] then
+        arrivalTimes[i] = arrivalTimes[i] + cost * emissionIntervals[i]
+      else
+        permits[i] = permits[i] - cost
+        if counts[i] then
+          counts[i] = counts[i] + cost
+        end
+      end
+      touched[i] = true
+    end
+  end
+
+  results[2 * r - 1] = denied
+  results[2 * r] = wait
+  position = position + 3 + count
+end
+
+for i = 1, #KEYS do
+  if touched[i] then
+    if algorithms[i] == 'GCRA' then
+      redis.call('HSET', KEYS[i], 'a', string.format('%.3f', arrivalTimes[i]))
+      -- The state is equivalent to no state once the arrival time is behind the clock
+      redis.call('PEXPIRE', KEYS[i], math.ceil(arrivalTimes[i] - now))
+    elseif algorithms[i] == 'SLIDING_WINDOW' then
+      redis.call('HMSET', KEYS[i], 'c', counts[i], 'l', previousCounts[i], 'w', windowStarts[i])
+      -- The current window keeps weighing on the next one
+      redis.call('PEXPIRE', KEYS[i], 2 * windows[i])
+    else
+      redis.call('HMSET', KEYS[i], 'p', permits[i], 't', timestamps[i], 'r', credits[i])
+      -- A bucket left alone for a whole time unit is full again, which is the same as having no state; a bucket
+      -- in debt for reservations needs longer
+      local ttl = windows[i]
+      if permits[i] < 0 then
+        ttl = ttl + math.ceil(-permits[i] * windows[i] / limits[i])
+      end
+      redis.call('PEXPIRE', KEYS[i], ttl)
+    end
+  end
+end
+
+return results
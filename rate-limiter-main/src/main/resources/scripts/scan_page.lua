@@ -0,0 +1,4 @@
+-- One SSCAN step starting at a caller supplied cursor, so a listing can be resumed by any node
+-- KEYS[1] = set of ids, ARGV[1] = cursor, ARGV[2] = COUNT hint
+-- Returns {next cursor ("0" when the scan is complete), {ids}}
+return redis.call('SSCAN', KEYS[1], ARGV[1], 'COUNT', ARGV[2])
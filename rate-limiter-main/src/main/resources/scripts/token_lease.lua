@@ -0,0 +1,88 @@
+-- Leases permits of one token bucket to a node, after taking back the unused permits of its previous lease.
+-- KEYS[1] : bucket state hash (p = available permits, t = last request timestamp, r = refill credit)
+-- ARGV[1] : current timestamp in milliseconds
+-- ARGV[2] : max permits
+-- ARGV[3] : time unit length in milliseconds
+-- ARGV[4] : unused permits returned by the node
+-- ARGV[5] : permits requested for the new lease
+-- Returns the number of permits granted, between 0 and the requested number, and when none is granted the
+-- milliseconds before the bucket has a permit again (0 otherwise).
+
+-- floor(a * b / m) and a * b % m for integers 0 <= a, b < m <= 2^32. Lua numbers are doubles, exact up to 2^53,
+-- so b is split in 16 bit halves to keep every intermediate product below 2^48.
+local function mulDivMod(a, b, m)
+  local high = math.floor(b / 65536)
+  local highProduct = a * high
+  local shifted = highProduct % m * 65536
+  local lowProduct = a * (b % 65536)
+  local quotient = math.floor(highProduct / m) * 65536 + math.floor(shifted / m) + math.floor(lowProduct / m)
+  local remainder = shifted % m + lowProduct % m
+  if remainder >= m then
+    quotient = quotient + 1
+    remainder = remainder - m
+  end
+  return quotient, remainder
+end
+
+-- Token bucket refilled up to now in integer arithmetic, returns the available permits, the refill credit (the
+-- progress towards the next permit in 1/window of a permit, carried over so that frequent requests do not lose it)
+-- and the timestamp to store, which never goes backwards so that the same time is never credited twice
+local function refill(permits, timestamp, credit, now, maxPermits, window)
+  if now < timestamp then
+    return permits, credit, timestamp
+  end
+  local elapsed = now - timestamp
+  if elapsed >= window then
+    if permits >= 0 then
+      return maxPermits, 0, now
+    end
+    -- In debt for reservations, whole time units refill maxPermits each
+    local units = math.floor(elapsed / window)
+    permits = permits + units * maxPermits
+    elapsed = elapsed - units * window
+  end
+  local gained, remainder = mulDivMod(elapsed, maxPermits % window, window)
+  remainder = remainder + credit
+  if remainder >= window then
+    gained = gained + 1
+    remainder = remainder - window
+  end
+  local available = permits + elapsed * math.floor(maxPermits / window) + gained
+  if available >= maxPermits then
+    return maxPermits, 0, now
+  end
+  return available, remainder, now
+end
+
+local now = tonumber(ARGV[1])
+local maxPermits = tonumber(ARGV[2])
+local window = tonumber(ARGV[3])
+local available = maxPermits
+local credit = 0
+local timestamp = now
+
+local state = redis.call('HMGET', KEYS[1], 'p', 't', 'r')
+if state[1] and state[2] then
+  available, credit, timestamp = refill(tonumber(state[1]), tonumber(state[2]), tonumber(state[3] or 0), now, maxPermits, window)
+end
+
+available = available + tonumber(ARGV[4])
+if available >= maxPermits then
+  available = maxPermits
+  credit = 0
+end
+-- Negative when reservations made through the rate limit script left the bucket in debt
+local granted = math.max(math.min(available, tonumber(ARGV[5])), 0)
+local wait = 0
+if granted == 0 then
+  wait = math.ceil(((1 - available) * window - credit) / maxPermits)
+end
+
+local ttl = window
+if available - granted < 0 then
+  ttl = ttl + math.ceil((granted - available) * window / maxPermits)
+end
+redis.call('HMSET', KEYS[1], 'p', available - granted, 't', timestamp, 'r', credit)
+redis.call('PEXPIRE', KEYS[1], ttl)
+
+return {granted, wait}
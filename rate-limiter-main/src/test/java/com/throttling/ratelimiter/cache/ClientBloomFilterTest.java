@@ -0,0 +1,34 @@
+package com.throttling.ratelimiter.cache;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ClientBloomFilterTest {
+
+	@Test
+	public void addedClientsAreAlwaysContained() {
+		ClientBloomFilter filter = new ClientBloomFilter(10000, 0.01);
+		for (int i = 0; i < 10000; i++) {
+			filter.add("client-" + i);
+		}
+		for (int i = 0; i < 10000; i++) {
+			assertTrue(filter.mightContain("client-" + i));
+		}
+	}
+
+	@Test
+	public void unknownClientsPassAtAboutTheFalsePositiveRate() {
+		ClientBloomFilter filter = new ClientBloomFilter(10000, 0.01);
+		for (int i = 0; i < 10000; i++) {
+			filter.add("client-" + i);
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (filter.mightContain("unknown-" + i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("false positives: " + falsePositives, falsePositives < 2000);
+	}
+}
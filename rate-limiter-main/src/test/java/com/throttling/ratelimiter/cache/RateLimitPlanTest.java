@@ -0,0 +1,108 @@
+package com.throttling.ratelimiter.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.throttling.ratelimiter.enums.DecisionOutcome;
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+
+public class RateLimitPlanTest {
+
+	private final ClientRateLimitData global = limit(LimitType.DEFAULT, "GLOBAL");
+	private final ClientRateLimitData get = limit(LimitType.METHOD, "GET");
+	private final ClientRateLimitData order = limit(LimitType.API, "/orders/42");
+	private final ClientRateLimitData anyOrder = limit(LimitType.API, "/orders/*");
+	private final ClientRateLimitData orderItems = limit(LimitType.API, "/orders/*/items");
+	private final ClientRateLimitData ordersTree = limit(LimitType.API, "/orders/**");
+	private final ClientRateLimitData everything = limit(LimitType.API, "/**");
+
+	private final RateLimitPlan plan = RateLimitPlan.compile(Arrays.asList(global, get, order, anyOrder, orderItems, ordersTree, everything));
+
+	@Test
+	public void resolvesInDefaultMethodApiOrder() {
+		assertEquals(Arrays.asList(global, get, order), plan.resolve("GET", "/orders/42"));
+		assertEquals(Arrays.asList(global, anyOrder), plan.resolve("PUT", "/orders/7"));
+	}
+
+	@Test
+	public void resolvedListsAreSharedPerMethodAndApiLimit() {
+		List<ClientRateLimitData> resolved = plan.resolve("PUT", "/orders/7");
+
+		assertSame(resolved, plan.resolve("PUT", "/orders/8"));
+		assertSame(resolved, plan.resolve("DELETE", "/orders/7"));
+		assertNotSame(resolved, plan.resolve("GET", "/orders/7"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void resolvedListsCannotBeModified() {
+		plan.resolve("GET", "/orders/42").clear();
+	}
+
+	@Test
+	public void mostSpecificPatternWins() {
+		assertEquals(orderItems, apiLimit("/orders/7/items"));
+		assertEquals(ordersTree, apiLimit("/orders/7/items/3"));
+		assertEquals(ordersTree, apiLimit("/orders"));
+		assertEquals(everything, apiLimit("/customers/7"));
+	}
+
+	@Test
+	public void exactLookupDoesNotExpandPatterns() {
+		assertEquals(anyOrder, plan.getLimit(LimitType.API, "/orders/*"));
+		assertNull(plan.getLimit(LimitType.API, "/orders/7"));
+		assertNull(plan.getLimit(LimitType.METHOD, "PUT"));
+	}
+
+	@Test
+	public void withoutPatternsOnlyExactNamesMatch() {
+		RateLimitPlan exactPlan = RateLimitPlan.compile(Arrays.asList(global, order));
+
+		assertEquals(Arrays.asList(global), exactPlan.resolve("GET", "/orders/7"));
+		assertEquals(Arrays.asList(global), exactPlan.resolve("GET", null));
+	}
+
+	@Test
+	public void decisionsAndStateKeysAreBuiltOncePerLimit() {
+		List<ClientRateLimitData> resolved = plan.resolve("GET", "/orders/42");
+		List<ClientRateLimitData> other = plan.resolve("POST", "/orders/42");
+
+		RateLimitDecision allowed = RateLimitPlan.allowed(resolved, 2, 0);
+		assertEquals(RateLimitDecision.allowed(order), allowed);
+		assertSame(allowed, RateLimitPlan.allowed(other, 1, 0));
+		assertSame(RateLimitPlan.denied(resolved, 0, 0), RateLimitPlan.denied(other, 0, 0));
+		assertSame(RateLimitPlan.stateKey(resolved, 0, "state:"), RateLimitPlan.stateKey(other, 0, "state:"));
+		assertEquals("state:" + global.getId(), RateLimitPlan.stateKey(resolved, 0, "state:"));
+	}
+
+	@Test
+	public void otherListsGetNewDecisions() {
+		List<ClientRateLimitData> shards = Arrays.asList(global, order);
+
+		assertEquals(RateLimitDecision.denied(order), RateLimitPlan.denied(shards, 1, 0));
+		assertNotSame(RateLimitPlan.denied(shards, 1, 0), RateLimitPlan.denied(shards, 1, 0));
+
+		RateLimitDecision reserved = RateLimitPlan.allowed(plan.resolve("GET", "/orders/42"), 2, 50);
+		assertEquals(DecisionOutcome.ALLOWED, reserved.getOutcome());
+		assertEquals(50, reserved.getRetryAfterMillis());
+		assertEquals("state:" + order.getId(), RateLimitPlan.stateKey(shards, 1, "state:"));
+	}
+
+	private ClientRateLimitData apiLimit(String apiName) {
+		List<ClientRateLimitData> rateLimits = plan.resolve("DELETE", apiName);
+		return rateLimits.get(rateLimits.size() - 1);
+	}
+
+	private static ClientRateLimitData limit(LimitType limitType, String limitName) {
+		return new ClientRateLimitData("client", limitType, limitName, TimeUnit.SEC, 10);
+	}
+}
@@ -0,0 +1,288 @@
+package com.throttling.ratelimiter.coalescing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.throttling.ratelimiter.engine.RateLimitEngine;
+import com.throttling.ratelimiter.engine.impl.LocalRateLimitEngine;
+import com.throttling.ratelimiter.enums.ApiMethod;
+import com.throttling.ratelimiter.enums.DecisionOutcome;
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.fallback.RedisCircuitBreaker;
+import com.throttling.ratelimiter.metrics.RateLimiterMetrics;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+import com.throttling.ratelimiter.pojo.request.ClientApiRequest;
+import com.throttling.ratelimiter.sharding.LimitShardRouter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RequestCoalescerTest {
+
+	private static final int THREADS = 16;
+
+	private static final int REQUESTS_PER_THREAD = 20;
+
+	// Allows the request when its API is even, and takes a while like a call to Redis
+	private static class SlowEngine implements RateLimitEngine {
+
+		private final AtomicInteger calls = new AtomicInteger();
+
+		@Override
+		public RateLimitDecision tryAcquire(String clientId, String methodName, String apiName, long permits, long maxWaitMillis) {
+			calls.incrementAndGet();
+			sleep();
+			return decide(apiName);
+		}
+
+		@Override
+		public List<RateLimitDecision> tryAcquireAll(List<ClientApiRequest> clientApiRequests) {
+			calls.incrementAndGet();
+			sleep();
+			List<RateLimitDecision> decisions = new ArrayList<>();
+			for (ClientApiRequest request : clientApiRequests) {
+				decisions.add(decide(request.getApiName()));
+			}
+			return decisions;
+		}
+
+		@Override
+		public boolean supportsGroupCommit() {
+			return true;
+		}
+
+		private static RateLimitDecision decide(String apiName) {
+			DecisionOutcome outcome = Integer.parseInt(apiName) % 2 == 0 ? DecisionOutcome.ALLOWED : DecisionOutcome.DENIED;
+			return new RateLimitDecision(outcome, LimitType.API, apiName, 0);
+		}
+
+		private static void sleep() {
+			try {
+				Thread.sleep(2);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private final SlowEngine engine = new SlowEngine();
+
+	private final RequestCoalescer coalescer = new RequestCoalescer();
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+	@Before
+	public void setUp() {
+		RateLimiterMetrics metrics = new RateLimiterMetrics();
+		ReflectionTestUtils.setField(metrics, "meterRegistry", new SimpleMeterRegistry());
+		metrics.init();
+		ReflectionTestUtils.setField(coalescer, "rateLimitEngine", engine);
+		ReflectionTestUtils.setField(coalescer, "rateLimiterMetrics", metrics);
+		LimitShardRouter limitShardRouter = new LimitShardRouter();
+		ReflectionTestUtils.setField(limitShardRouter, "shardedClientIds", new String[] { "sharded" });
+		ReflectionTestUtils.setField(limitShardRouter, "shardCount", 8);
+		limitShardRouter.init();
+		ReflectionTestUtils.setField(coalescer, "limitShardRouter", limitShardRouter);
+		ReflectionTestUtils.setField(coalescer, "isEnabled", true);
+		ReflectionTestUtils.setField(coalescer, "maxBatchSize", 64);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private static ClientApiRequest request(String clientId, int api) {
+		ClientApiRequest request = new ClientApiRequest();
+		request.setClientId(clientId);
+		request.setMethodName(ApiMethod.GET);
+		request.setApiName(String.valueOf(api));
+		return request;
+	}
+
+	@Test
+	public void everyCallerGetsItsOwnDecisionFromFewerEngineCalls() throws Exception {
+		List<Future<Integer>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int thread = t;
+			results.add(executor.submit(() -> {
+				int mismatches = 0;
+				for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+					int api = thread * REQUESTS_PER_THREAD + i;
+					RateLimitDecision decision = coalescer.tryAcquire(request("c1", api));
+					boolean isAllowed = decision.getOutcome() == DecisionOutcome.ALLOWED;
+					if (!decision.getLimitName().equals(String.valueOf(api)) || isAllowed != (api % 2 == 0)) {
+						mismatches++;
+					}
+				}
+				return mismatches;
+			}));
+		}
+
+		for (Future<Integer> result : results) {
+			assertEquals(Integer.valueOf(0), result.get());
+		}
+		assertTrue("engine calls: " + engine.calls.get(), engine.calls.get() < THREADS * REQUESTS_PER_THREAD);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void failuresReachTheCaller() {
+		ReflectionTestUtils.setField(coalescer, "rateLimitEngine", new SlowEngine() {
+			@Override
+			public RateLimitDecision tryAcquire(String clientId, String methodName, String apiName, long permits, long maxWaitMillis) {
+				throw new IllegalStateException("Redis down");
+			}
+		});
+		coalescer.tryAcquire(request("c1", 1));
+	}
+
+	//The first request is evaluated alone and held until released, the requests arriving meanwhile form one batch
+	private static class BlockingEngine extends SlowEngine {
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		private final Supplier<RuntimeException> aloneFailure;
+
+		private final Supplier<Throwable> batchFailure;
+
+		private BlockingEngine(Supplier<RuntimeException> aloneFailure, Supplier<Throwable> batchFailure) {
+			this.aloneFailure = aloneFailure;
+			this.batchFailure = batchFailure;
+		}
+
+		@Override
+		public RateLimitDecision tryAcquire(String clientId, String methodName, String apiName, long permits, long maxWaitMillis) {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			RuntimeException failure = aloneFailure.get();
+			if (failure != null) {
+				throw failure;
+			}
+			return super.tryAcquire(clientId, methodName, apiName, permits, maxWaitMillis);
+		}
+
+		@Override
+		public List<RateLimitDecision> tryAcquireAll(List<ClientApiRequest> clientApiRequests) {
+			Throwable failure = batchFailure.get();
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			throw (RuntimeException) failure;
+		}
+	}
+
+	private List<Future<RateLimitDecision>> submitHeldRequests(BlockingEngine blockingEngine, Supplier<RateLimitDecision> call)
+			throws InterruptedException {
+		ReflectionTestUtils.setField(coalescer, "rateLimitEngine", blockingEngine);
+		List<Future<RateLimitDecision>> results = new ArrayList<>();
+		results.add(executor.submit(call::get));
+		Thread.sleep(50);
+		for (int i = 0; i < 5; i++) {
+			results.add(executor.submit(call::get));
+		}
+		Thread.sleep(50);
+		blockingEngine.release.countDown();
+		return results;
+	}
+
+	@Test
+	public void batchFailureCountsOnceInTheCircuitBreaker() throws Exception {
+		RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker();
+		ReflectionTestUtils.setField(circuitBreaker, "isEnabled", true);
+		ReflectionTestUtils.setField(circuitBreaker, "failureThreshold", 3);
+		ReflectionTestUtils.setField(circuitBreaker, "openDurationMillis", 5000L);
+		RateLimitDecision fallback = RateLimitDecision.unresolved(true);
+
+		BlockingEngine blockingEngine = new BlockingEngine(() -> new QueryTimeoutException("Redis server response timeout"),
+				() -> new QueryTimeoutException("Redis server response timeout"));
+		List<Future<RateLimitDecision>> results = submitHeldRequests(blockingEngine,
+				() -> circuitBreaker.call(() -> coalescer.tryAcquire(request("c1", 2)), () -> fallback));
+
+		for (Future<RateLimitDecision> result : results) {
+			assertEquals(fallback, result.get(5, TimeUnit.SECONDS));
+		}
+		// One failure of the request evaluated alone and one of the batch, below the threshold
+		assertFalse(circuitBreaker.isOpen());
+	}
+
+	@Test
+	public void errorsReleaseEveryWaiter() throws Exception {
+		BlockingEngine blockingEngine = new BlockingEngine(() -> null, () -> new NoClassDefFoundError("redis/Client"));
+		List<Future<RateLimitDecision>> results = submitHeldRequests(blockingEngine, () -> coalescer.tryAcquire(request("c1", 2)));
+
+		assertEquals(DecisionOutcome.ALLOWED, results.get(0).get(5, TimeUnit.SECONDS).getOutcome());
+		for (Future<RateLimitDecision> result : results.subList(1, results.size())) {
+			try {
+				result.get(5, TimeUnit.SECONDS);
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof NoClassDefFoundError);
+				continue;
+			}
+			throw new AssertionError("Batch error not seen by the waiter");
+		}
+	}
+
+	//Passes only when every thread is inside the engine at the same time, i.e. none of them waits for another one
+	private void assertNeverParked(RateLimitEngine rateLimitEngine, String clientId) throws Exception {
+		ReflectionTestUtils.setField(coalescer, "rateLimitEngine", rateLimitEngine);
+		List<Future<RateLimitDecision>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			results.add(executor.submit(() -> coalescer.tryAcquire(request(clientId, 2))));
+		}
+		for (Future<RateLimitDecision> result : results) {
+			assertEquals(DecisionOutcome.ALLOWED, result.get(5, TimeUnit.SECONDS).getOutcome());
+		}
+	}
+
+	private static RateLimitDecision awaitAll(CyclicBarrier allInside) {
+		try {
+			allInside.await(2, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			throw new AssertionError("Concurrent requests of one client were serialized", e);
+		}
+		return new RateLimitDecision(DecisionOutcome.ALLOWED, LimitType.API, "2", 0);
+	}
+
+	@Test
+	public void localEngineRequestsNeverPark() throws Exception {
+		CyclicBarrier allInside = new CyclicBarrier(THREADS);
+		assertNeverParked(new LocalRateLimitEngine() {
+			@Override
+			public RateLimitDecision tryAcquire(String clientId, String methodName, String apiName, long permits, long maxWaitMillis) {
+				return awaitAll(allInside);
+			}
+		}, "c1");
+	}
+
+	@Test
+	public void shardedClientRequestsNeverPark() throws Exception {
+		CyclicBarrier allInside = new CyclicBarrier(THREADS);
+		assertNeverParked(new SlowEngine() {
+			@Override
+			public RateLimitDecision tryAcquire(String clientId, String methodName, String apiName, long permits, long maxWaitMillis) {
+				return awaitAll(allInside);
+			}
+		}, "sharded");
+	}
+}
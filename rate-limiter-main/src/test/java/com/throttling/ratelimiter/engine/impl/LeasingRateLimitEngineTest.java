@@ -0,0 +1,93 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.throttling.ratelimiter.enums.DecisionOutcome;
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.repository.RateLimitStateRepository;
+import com.throttling.ratelimiter.service.impl.ClientConfigServiceImpl;
+
+public class LeasingRateLimitEngineTest {
+
+	private static final long GRANTED = 5;
+
+	private final ClientRateLimitData globalLimit = new ClientRateLimitData("c1", LimitType.DEFAULT, "GLOBAL", TimeUnit.SEC, 100);
+
+	private final ClientRateLimitData apiLimit = new ClientRateLimitData("c1", LimitType.API, "/api", TimeUnit.SEC, 100);
+
+	private final LeasingRateLimitEngine engine = new LeasingRateLimitEngine();
+
+	//Grants every lease in full, until Redis goes down for the API limit
+	private static class FailingLeaseTemplate extends StringRedisTemplate {
+
+		private volatile boolean isApiLeaseFailing = true;
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+			if (isApiLeaseFailing && keys.get(0).equals("/api")) {
+				throw new QueryTimeoutException("Redis server response timeout");
+			}
+			return (T) Arrays.asList(GRANTED, 0L);
+		}
+	}
+
+	private final FailingLeaseTemplate redisTemplate = new FailingLeaseTemplate();
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(engine, "clientConfigServiceImpl", new ClientConfigServiceImpl() {
+			@Override
+			public List<ClientRateLimitData> fetchApplicableRateLimits(String clientId, String methodName, String apiName) {
+				return Arrays.asList(globalLimit, apiLimit);
+			}
+		});
+		ReflectionTestUtils.setField(engine, "rateLimitStateRepository", new RateLimitStateRepository() {
+			@Override
+			public String buildStateKey(ClientRateLimitData rateLimit) {
+				return rateLimit.getLimitName();
+			}
+		});
+		ReflectionTestUtils.setField(engine, "stringRedisTemplate", redisTemplate);
+		ReflectionTestUtils.setField(engine, "redisClock", new RedisClock());
+		ReflectionTestUtils.setField(engine, "leaseDurationMillis", 60_000L);
+		ReflectionTestUtils.setField(engine, "maxLeaseFraction", 0.1);
+		ReflectionTestUtils.setField(engine, "ewmaAlpha", 0.3);
+	}
+
+	@SuppressWarnings("unchecked")
+	private PermitLease lease(ClientRateLimitData limit) {
+		return ((Map<String, PermitLease>) ReflectionTestUtils.getField(engine, "leases")).get(limit.getId());
+	}
+
+	@Test
+	public void failedRenewalGivesBackThePermitsAlreadyTaken() {
+		try {
+			engine.tryAcquire("c1", "GET", "/api");
+			throw new AssertionError("Lease failure not rethrown");
+		} catch (QueryTimeoutException expected) {
+			// Counted by the circuit breaker
+		}
+
+		// The permit taken from the global lease before the API lease failed is back
+		synchronized (lease(globalLimit)) {
+			assertEquals(GRANTED, lease(globalLimit).release());
+		}
+
+		redisTemplate.isApiLeaseFailing = false;
+		assertEquals(DecisionOutcome.ALLOWED, engine.tryAcquire("c1", "GET", "/api").getOutcome());
+	}
+}
@@ -0,0 +1,57 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+
+public class LocalGcraTest {
+
+	private static final long SECOND = 1_000_000_000L;
+
+	private ClientRateLimitData limit(long maxPermits, long burst) {
+		ClientRateLimitData limit = new ClientRateLimitData("client", LimitType.DEFAULT, "GLOBAL", TimeUnit.SEC, maxPermits,
+				RateLimitAlgorithm.GCRA);
+		limit.setBurst(burst);
+		return limit;
+	}
+
+	@Test
+	public void burstPassesThenRequestsAreSpacedByEmissionInterval() {
+		LocalGcra gcra = new LocalGcra(limit(4, 2), 0);
+
+		assertTrue(gcra.tryConsume(0));
+		assertTrue(gcra.tryConsume(0));
+		assertFalse(gcra.tryConsume(0));
+
+		assertFalse(gcra.tryConsume(SECOND / 4 - 1));
+		assertTrue(gcra.tryConsume(SECOND / 4));
+		assertFalse(gcra.tryConsume(SECOND / 4));
+	}
+
+	@Test
+	public void retryAfterIsTimeUntilNextConformingArrival() {
+		LocalGcra gcra = new LocalGcra(limit(4, 1), 0);
+		gcra.tryConsume(0);
+
+		assertFalse(gcra.tryConsume(SECOND / 10));
+		assertEquals(SECOND / 4 - SECOND / 10, gcra.retryAfterNanos(SECOND / 10));
+		assertTrue(gcra.tryConsume(SECOND / 4));
+	}
+
+	@Test
+	public void burstDefaultsToMaxPermits() {
+		LocalGcra gcra = new LocalGcra(limit(3, 0), 0);
+
+		assertTrue(gcra.tryConsume(0));
+		assertTrue(gcra.tryConsume(0));
+		assertTrue(gcra.tryConsume(0));
+		assertFalse(gcra.tryConsume(0));
+	}
+}
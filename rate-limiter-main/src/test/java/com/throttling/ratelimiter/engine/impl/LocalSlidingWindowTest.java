@@ -0,0 +1,90 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+
+public class LocalSlidingWindowTest {
+
+	private static final long SECOND = 1_000_000_000L;
+
+	private final ClientRateLimitData limit = new ClientRateLimitData("client", LimitType.DEFAULT, "GLOBAL", TimeUnit.SEC, 4,
+			RateLimitAlgorithm.SLIDING_WINDOW);
+
+	@Test
+	public void rejectsOnceWindowIsFull() {
+		LocalSlidingWindow window = new LocalSlidingWindow(limit, 0);
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(window.tryConsume(0));
+		}
+		assertFalse(window.tryConsume(SECOND - 1));
+	}
+
+	@Test
+	public void previousWindowWeighsByOverlap() {
+		LocalSlidingWindow window = new LocalSlidingWindow(limit, 0);
+		for (int i = 0; i < 4; i++) {
+			window.tryConsume(0);
+		}
+
+		// A quarter into the next window, 3 of the previous 4 requests still count
+		long quarterIn = SECOND + SECOND / 4;
+		assertTrue(window.tryConsume(quarterIn));
+		assertFalse(window.tryConsume(quarterIn));
+
+		// Two windows later nothing is left of the first one
+		long later = 3 * SECOND;
+		for (int i = 0; i < 4; i++) {
+			assertTrue(window.tryConsume(later));
+		}
+		assertFalse(window.tryConsume(later));
+	}
+
+	@Test
+	public void refundRestoresPermit() {
+		LocalSlidingWindow window = new LocalSlidingWindow(limit, 0);
+		for (int i = 0; i < 4; i++) {
+			window.tryConsume(0);
+		}
+		window.refund();
+
+		assertTrue(window.tryConsume(0));
+		assertFalse(window.tryConsume(0));
+	}
+
+	@Test
+	public void concurrentConsumersNeverExceedTheLimit() throws InterruptedException {
+		ClientRateLimitData hourly = new ClientRateLimitData("client", LimitType.DEFAULT, "GLOBAL", TimeUnit.HOUR, 1_000,
+				RateLimitAlgorithm.SLIDING_WINDOW);
+		LocalSlidingWindow window = new LocalSlidingWindow(hourly, 0);
+		AtomicInteger allowed = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 500; i++) {
+					if (window.tryConsume(i)) {
+						allowed.incrementAndGet();
+					}
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(1_000, allowed.get());
+	}
+}
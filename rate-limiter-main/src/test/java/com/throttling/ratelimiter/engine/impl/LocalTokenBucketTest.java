@@ -0,0 +1,87 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.LimitState;
+
+public class LocalTokenBucketTest {
+
+	private static final long SECOND = 1_000_000_000L;
+
+	private final ClientRateLimitData limit = new ClientRateLimitData("client", LimitType.DEFAULT, "GLOBAL", TimeUnit.SEC, 2);
+
+	@Test
+	public void startsFullAndRejectsWhenEmpty() {
+		LocalTokenBucket bucket = new LocalTokenBucket(limit, 0);
+
+		assertTrue(bucket.tryConsume(0));
+		assertTrue(bucket.tryConsume(0));
+		assertFalse(bucket.tryConsume(0));
+	}
+
+	@Test
+	public void refillsProportionallyAndNeverAboveCapacity() {
+		LocalTokenBucket bucket = new LocalTokenBucket(limit, 0);
+		bucket.tryConsume(0);
+		bucket.tryConsume(0);
+
+		assertTrue(bucket.tryConsume(SECOND / 2));
+		assertFalse(bucket.tryConsume(SECOND / 2));
+
+		long later = 10 * SECOND;
+		assertTrue(bucket.tryConsume(later));
+		assertTrue(bucket.tryConsume(later));
+		assertFalse(bucket.tryConsume(later));
+	}
+
+	@Test
+	public void refundRestoresPermit() {
+		LocalTokenBucket bucket = new LocalTokenBucket(limit, 0);
+		bucket.tryConsume(0);
+		bucket.tryConsume(0);
+		bucket.refund();
+
+		assertTrue(bucket.tryConsume(0));
+		assertFalse(bucket.tryConsume(0));
+	}
+
+	@Test
+	public void restoredBucketContinuesFromSnapshot() {
+		LocalTokenBucket bucket = new LocalTokenBucket(limit, 0);
+		bucket.tryConsume(0);
+		bucket.tryConsume(0);
+		LimitState state = bucket.snapshot(0, 5_000);
+
+		// Restored in another run whose nanoTime clock has nothing in common with the first one
+		LocalTokenBucket restored = new LocalTokenBucket(limit, 7 * SECOND);
+		restored.restore(state, 7 * SECOND, 5_000);
+		assertFalse(restored.tryConsume(7 * SECOND));
+
+		// Half a second later one permit was refilled, measured from the saved timestamp
+		LocalTokenBucket later = new LocalTokenBucket(limit, 7 * SECOND);
+		later.restore(state, 7 * SECOND, 5_500);
+		assertTrue(later.tryConsume(7 * SECOND));
+		assertFalse(later.tryConsume(7 * SECOND));
+	}
+
+	@Test
+	public void weightedRequestsReserveAheadWithinTheWait() {
+		LocalTokenBucket bucket = new LocalTokenBucket(limit, 0);
+
+		assertEquals(LocalRateLimiter.REJECTED, bucket.tryConsume(0, 3, SECOND));
+		assertEquals(0, bucket.tryConsume(0, 2, 0));
+		assertEquals(SECOND / 2, bucket.retryAfterNanos(0, 1));
+
+		// Reserved, the caller uses the permit in half a second and the next one has to wait a second
+		assertEquals(SECOND / 2, bucket.tryConsume(0, 1, SECOND));
+		assertEquals(LocalRateLimiter.REJECTED, bucket.tryConsume(0, 1, SECOND / 2));
+		assertEquals(SECOND, bucket.retryAfterNanos(0, 1));
+	}
+}
@@ -0,0 +1,49 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+
+public class PermitLeaseTest {
+
+	private static final long MILLI = 1_000_000L;
+
+	private static final long DURATION = 100 * MILLI;
+
+	private final PermitLease lease = new PermitLease(new ClientRateLimitData("client", LimitType.DEFAULT, "GLOBAL", TimeUnit.SEC, 1000));
+
+	@Test
+	public void servesGrantedPermitsUntilExpiry() {
+		lease.renew(2, 0, DURATION);
+
+		assertTrue(lease.tryTake(0));
+		assertTrue(lease.tryTake(DURATION - 1));
+		assertFalse(lease.tryTake(DURATION - 1));
+
+		lease.renew(2, 0, DURATION);
+		assertFalse(lease.tryTake(DURATION));
+		assertEquals(2, lease.release());
+	}
+
+	@Test
+	public void leaseSizeFollowsObservedRateWithinBounds() {
+		assertEquals(1, lease.nextLeaseSize(0, DURATION, 0.5, 50));
+
+		// 10 permits used in 10 ms, 100 expected over the lease duration
+		lease.renew(10, MILLI, DURATION);
+		for (int i = 0; i < 10; i++) {
+			lease.tryTake(MILLI);
+		}
+		assertEquals(50, lease.nextLeaseSize(11 * MILLI, DURATION, 0.5, 50));
+
+		// Nothing used for a whole second, the average halves
+		lease.renew(10, 11 * MILLI, DURATION);
+		assertEquals(50, lease.nextLeaseSize(1011 * MILLI, DURATION, 0.5, 1000));
+	}
+}
@@ -0,0 +1,154 @@
+package com.throttling.ratelimiter.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.throttling.ratelimiter.enums.DecisionOutcome;
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.fallback.RedisCircuitBreaker;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.pojo.model.LimitState;
+import com.throttling.ratelimiter.pojo.model.RateLimitDecision;
+import com.throttling.ratelimiter.repository.RateLimitStateRepository;
+import com.throttling.ratelimiter.service.ClientLockService;
+import com.throttling.ratelimiter.service.impl.ClientConfigServiceImpl;
+import com.throttling.ratelimiter.sharding.LimitShardRouter;
+
+public class RedisLockRateLimitEngineTest {
+
+	private static final long MAX_PERMITS = 20;
+
+	private static final long LOCK_WAIT_MILLIS = 2;
+
+	private final ClientRateLimitData limit = new ClientRateLimitData("c1", LimitType.DEFAULT, "GLOBAL",
+			com.throttling.ratelimiter.enums.TimeUnit.HOUR, MAX_PERMITS);
+
+	private final RedisLockRateLimitEngine engine = new RedisLockRateLimitEngine();
+
+	private final RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker();
+
+	//In-JVM lock with the wait of ClientLockServiceImpl
+	private static class BusyLockService implements ClientLockService {
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		@Override
+		public void acquireLock(String clientId) {
+			try {
+				if (lock.tryLock(LOCK_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+					return;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			throw new CannotAcquireLockException("Lock not acquired within " + LOCK_WAIT_MILLIS + " ms: " + clientId);
+		}
+
+		@Override
+		public void releaseLock(String clientId) {
+			lock.unlock();
+		}
+
+		@Override
+		public void acquireLocks(List<String> lockNames) {
+			acquireLock(lockNames.get(0));
+		}
+
+		@Override
+		public void releaseLocks(List<String> lockNames) {
+			releaseLock(lockNames.get(0));
+		}
+	}
+
+	//State kept in memory, reads are slow enough to keep the lock busy
+	private static class SlowStateRepository extends RateLimitStateRepository {
+
+		private final Map<String, LimitState> states = new ConcurrentHashMap<>();
+
+		@Override
+		public List<LimitState> findAll(List<ClientRateLimitData> rateLimits) {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+			List<LimitState> found = new ArrayList<>();
+			for (ClientRateLimitData rateLimit : rateLimits) {
+				found.add(states.get(rateLimit.getId()));
+			}
+			return found;
+		}
+
+		@Override
+		public void saveAll(List<ClientRateLimitData> rateLimits, List<LimitState> limitStates) {
+			for (int i = 0; i < rateLimits.size(); i++) {
+				states.put(rateLimits.get(i).getId(), limitStates.get(i));
+			}
+		}
+	}
+
+	@Before
+	public void setUp() {
+		LimitShardRouter limitShardRouter = new LimitShardRouter();
+		ReflectionTestUtils.setField(limitShardRouter, "shardedClientIds", new String[0]);
+		limitShardRouter.init();
+
+		ReflectionTestUtils.setField(engine, "clientLockService", new BusyLockService());
+		ReflectionTestUtils.setField(engine, "rateLimitStateRepository", new SlowStateRepository());
+		ReflectionTestUtils.setField(engine, "limitShardRouter", limitShardRouter);
+		ReflectionTestUtils.setField(engine, "redisClock", new RedisClock());
+		ReflectionTestUtils.setField(engine, "lockWaitMillis", LOCK_WAIT_MILLIS);
+		ReflectionTestUtils.setField(engine, "clientConfigServiceImpl", new ClientConfigServiceImpl() {
+			@Override
+			public List<ClientRateLimitData> fetchApplicableRateLimits(String clientId, String methodName, String apiName) {
+				return Collections.singletonList(limit);
+			}
+		});
+
+		ReflectionTestUtils.setField(circuitBreaker, "isEnabled", true);
+		ReflectionTestUtils.setField(circuitBreaker, "failureThreshold", 5);
+		ReflectionTestUtils.setField(circuitBreaker, "openDurationMillis", 5000L);
+	}
+
+	@Test
+	public void busyLockDeniesInsteadOfDecidingLocally() throws InterruptedException {
+		AtomicInteger allowed = new AtomicInteger();
+		AtomicInteger lockBusy = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 25; i++) {
+					// The fallback admits everything, as a local copy of the limit would under contention
+					RateLimitDecision decision = circuitBreaker.call(() -> engine.tryAcquire("c1", "GET", "/api"),
+							() -> RateLimitDecision.allowed(limit));
+					if (decision.getOutcome() == DecisionOutcome.ALLOWED) {
+						allowed.incrementAndGet();
+					} else if (decision.getLimitType() == null) {
+						assertEquals(LOCK_WAIT_MILLIS, decision.getRetryAfterMillis());
+						lockBusy.incrementAndGet();
+					}
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTrue("lock never busy", lockBusy.get() > 0);
+		assertTrue("admitted " + allowed.get(), allowed.get() <= MAX_PERMITS);
+		assertFalse(circuitBreaker.isOpen());
+	}
+}
@@ -0,0 +1,98 @@
+package com.throttling.ratelimiter.fallback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class RedisCircuitBreakerTest {
+
+	private static final Supplier<String> FALLBACK = () -> "fallback";
+
+	private final RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker();
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(circuitBreaker, "isEnabled", true);
+		ReflectionTestUtils.setField(circuitBreaker, "failureThreshold", 3);
+		ReflectionTestUtils.setField(circuitBreaker, "openDurationMillis", 50L);
+	}
+
+	private String fail() {
+		calls.incrementAndGet();
+		throw new QueryTimeoutException("Redis server response timeout");
+	}
+
+	private String succeed() {
+		calls.incrementAndGet();
+		return "redis";
+	}
+
+	@Test
+	public void failedCallsAreDecidedByTheFallback() {
+		assertEquals("fallback", circuitBreaker.call(this::fail, FALLBACK));
+		assertEquals("redis", circuitBreaker.call(this::succeed, FALLBACK));
+		assertFalse(circuitBreaker.isOpen());
+	}
+
+	@Test
+	public void opensAfterConsecutiveFailuresAndSkipsRedis() {
+		for (int i = 0; i < 3; i++) {
+			circuitBreaker.call(this::fail, FALLBACK);
+		}
+		assertTrue(circuitBreaker.isOpen());
+
+		assertEquals("fallback", circuitBreaker.call(this::succeed, FALLBACK));
+		assertEquals(3, calls.get());
+	}
+
+	@Test
+	public void successfulTrialClosesTheCircuit() throws InterruptedException {
+		for (int i = 0; i < 3; i++) {
+			circuitBreaker.call(this::fail, FALLBACK);
+		}
+		Thread.sleep(60);
+
+		// The failed trial keeps it open for another open duration
+		assertEquals("fallback", circuitBreaker.call(this::fail, FALLBACK));
+		assertEquals("fallback", circuitBreaker.call(this::succeed, FALLBACK));
+		assertTrue(circuitBreaker.isOpen());
+
+		Thread.sleep(60);
+		assertEquals("redis", circuitBreaker.call(this::succeed, FALLBACK));
+		assertFalse(circuitBreaker.isOpen());
+	}
+
+	@Test
+	public void lockTimeoutsAreNeitherFailuresNorDecidedByTheFallback() {
+		int rethrown = 0;
+		for (int i = 0; i < 5; i++) {
+			try {
+				circuitBreaker.call(() -> {
+					throw new CannotAcquireLockException("Lock not acquired within 100 ms: c1");
+				}, FALLBACK);
+			} catch (CannotAcquireLockException e) {
+				rethrown++;
+			}
+		}
+		assertEquals(5, rethrown);
+		assertFalse(circuitBreaker.isOpen());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void otherErrorsAreNotHandled() {
+		circuitBreaker.call(() -> {
+			throw new IllegalArgumentException("Client ID cannot be null or empty");
+		}, FALLBACK);
+	}
+}
@@ -0,0 +1,110 @@
+package com.throttling.ratelimiter.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.MappingRedisConverter;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.ClientData;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+import com.throttling.ratelimiter.serializer.RateLimitDataRedisSerializer;
+
+import redis.embedded.RedisServer;
+
+//Saves and deletes against the embedded Redis 2.8 server, which has no UNLINK
+public class RateLimitConfigBatchRepositoryTest {
+
+	private static RedisServer redisServer;
+
+	private static LettuceConnectionFactory connectionFactory;
+
+	private final RateLimitConfigBatchRepository repository = new RateLimitConfigBatchRepository();
+
+	private final ClientData client = new ClientData("c1");
+
+	private final ClientRateLimitData limit = new ClientRateLimitData("c1", LimitType.DEFAULT, "GLOBAL", TimeUnit.SEC, 10);
+
+	private StringRedisTemplate stringRedisTemplate;
+
+	@BeforeClass
+	public static void startRedis() throws IOException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		redisServer = RedisServer.builder().port(port).setting("save \"\"").build();
+		redisServer.start();
+
+		connectionFactory = new LettuceConnectionFactory("localhost", port);
+		connectionFactory.afterPropertiesSet();
+	}
+
+	@AfterClass
+	public static void stopRedis() {
+		connectionFactory.destroy();
+		redisServer.stop();
+	}
+
+	@Before
+	public void setUp() {
+		stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+		stringRedisTemplate.execute(connection -> {
+			connection.flushDb();
+			return null;
+		}, true);
+
+		RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+		redisTemplate.setConnectionFactory(connectionFactory);
+		redisTemplate.setKeySerializer(new StringRedisSerializer());
+		redisTemplate.setValueSerializer(new RateLimitDataRedisSerializer());
+		redisTemplate.afterPropertiesSet();
+
+		MappingRedisConverter redisConverter = new MappingRedisConverter(new RedisMappingContext());
+		redisConverter.afterPropertiesSet();
+
+		ReflectionTestUtils.setField(repository, "stringRedisTemplate", stringRedisTemplate);
+		ReflectionTestUtils.setField(repository, "redisTemplate", redisTemplate);
+		ReflectionTestUtils.setField(repository, "redisConverter", redisConverter);
+		ReflectionTestUtils.setField(repository, "cachePrefix", "rate_limit:");
+		ReflectionTestUtils.setField(repository, "rateLimitStateRepository", new RateLimitStateRepository() {
+			@Override
+			public List<String> buildStateKeys(ClientRateLimitData rateLimit) {
+				return Collections.singletonList("rate_limit_state:" + rateLimit.getId());
+			}
+		});
+	}
+
+	@Test
+	public void deletesWithDelWhenTheServerRejectsUnlink() {
+		repository.saveAll(Collections.singletonList(client), Collections.singletonList(limit));
+		stringRedisTemplate.opsForHash().put("rate_limit_state:" + limit.getId(), "p", "3");
+		assertTrue(stringRedisTemplate.keys("*").size() > 3);
+
+		repository.deleteAll(Collections.singletonList(client), Collections.singletonList(limit));
+		assertEquals(Collections.emptySet(), stringRedisTemplate.keys("*"));
+		assertFalse((boolean) ReflectionTestUtils.getField(repository, "isUnlinkSupported"));
+
+		// Remembered, the next delete goes straight to DEL
+		repository.saveAll(Collections.singletonList(client), Collections.singletonList(limit));
+		repository.deleteAll(Collections.singletonList(client), Collections.singletonList(limit));
+		assertEquals(Collections.emptySet(), stringRedisTemplate.keys("*"));
+	}
+}
@@ -0,0 +1,36 @@
+package com.throttling.ratelimiter.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+
+public class RateLimitDataRedisSerializerTest {
+
+	private final RateLimitDataRedisSerializer serializer = new RateLimitDataRedisSerializer();
+
+	private final ClientRateLimitData rateLimit = new ClientRateLimitData("client-42", LimitType.API, "/orders/ítems",
+			TimeUnit.MIN, 100, RateLimitAlgorithm.GCRA);
+
+	@Test
+	public void roundTripsBinaryValues() {
+		rateLimit.setBurst(20);
+		byte[] bytes = serializer.serialize(rateLimit);
+
+		assertEquals(rateLimit, serializer.deserialize(bytes));
+		assertTrue(bytes.length < new GenericJackson2JsonRedisSerializer().serialize(rateLimit).length / 4);
+	}
+
+	@Test
+	public void readsLegacyJsonValues() {
+		byte[] legacy = new GenericJackson2JsonRedisSerializer().serialize(rateLimit);
+
+		assertEquals(rateLimit, serializer.deserialize(legacy));
+	}
+}
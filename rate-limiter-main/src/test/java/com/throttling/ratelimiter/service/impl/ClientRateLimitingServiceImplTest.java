@@ -0,0 +1,96 @@
+package com.throttling.ratelimiter.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.throttling.ratelimiter.cache.ClientPresenceCache;
+import com.throttling.ratelimiter.cache.RateLimitConfigNearCache;
+import com.throttling.ratelimiter.cache.RateLimitPlan;
+import com.throttling.ratelimiter.enums.ApiMethod;
+import com.throttling.ratelimiter.enums.Status;
+import com.throttling.ratelimiter.fallback.LocalFallbackLimiter;
+import com.throttling.ratelimiter.fallback.RedisCircuitBreaker;
+import com.throttling.ratelimiter.metrics.RateLimiterMetrics;
+import com.throttling.ratelimiter.pojo.request.ClientApiRequest;
+import com.throttling.ratelimiter.pojo.response.BaseResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ClientRateLimitingServiceImplTest {
+
+	private static final String NOT_CONFIGURED = "Client not configured, and default configuration is disabled.";
+
+	private final ClientRateLimitingServiceImpl service = new ClientRateLimitingServiceImpl();
+
+	//Knows "absent" to be absent and nothing about any other client, as before the presence filter is built
+	private static class StubPresenceCache extends ClientPresenceCache {
+
+		@Override
+		public Boolean isPresent(String clientId) {
+			return "absent".equals(clientId) ? Boolean.FALSE : null;
+		}
+	}
+
+	//No limits were ever loaded on this node
+	private static class EmptyNearCache extends RateLimitConfigNearCache {
+
+		@Override
+		public RateLimitPlan getLastKnown(String clientId) {
+			return null;
+		}
+	}
+
+	@Before
+	public void setUp() {
+		RateLimiterMetrics metrics = new RateLimiterMetrics();
+		ReflectionTestUtils.setField(metrics, "meterRegistry", new SimpleMeterRegistry());
+		metrics.init();
+
+		LocalFallbackLimiter localFallbackLimiter = new LocalFallbackLimiter();
+		ReflectionTestUtils.setField(localFallbackLimiter, "rateLimitConfigNearCache", new EmptyNearCache());
+		ReflectionTestUtils.setField(localFallbackLimiter, "rateLimiterMetrics", metrics);
+		ReflectionTestUtils.setField(localFallbackLimiter, "isUnresolvedAllowed", true);
+		localFallbackLimiter.init();
+
+		RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker();
+		ReflectionTestUtils.setField(circuitBreaker, "isEnabled", true);
+		ReflectionTestUtils.setField(circuitBreaker, "failureThreshold", 1);
+		ReflectionTestUtils.setField(circuitBreaker, "openDurationMillis", 60_000L);
+		circuitBreaker.call(() -> {
+			throw new QueryTimeoutException("Redis server response timeout");
+		}, () -> null);
+		assertTrue(circuitBreaker.isOpen());
+
+		ReflectionTestUtils.setField(service, "rateLimiterMetrics", metrics);
+		ReflectionTestUtils.setField(service, "redisCircuitBreaker", circuitBreaker);
+		ReflectionTestUtils.setField(service, "localFallbackLimiter", localFallbackLimiter);
+		ReflectionTestUtils.setField(service, "clientPresenceCache", new StubPresenceCache());
+	}
+
+	private static ClientApiRequest request(String clientId) {
+		ClientApiRequest request = new ClientApiRequest();
+		request.setClientId(clientId);
+		request.setMethodName(ApiMethod.GET);
+		request.setApiName("/api");
+		return request;
+	}
+
+	@Test
+	public void openCircuitRejectsClientsKnownToBeAbsent() {
+		assertEquals(NOT_CONFIGURED, service.verifyApiLimit(request("absent")).getMessage());
+		assertEquals(NOT_CONFIGURED, service.verifyApiLimitReactive(request("absent")).block().getMessage());
+
+		List<BaseResponse> responses = service.verifyApiLimits(Arrays.asList(request("absent"), request("unknown")));
+		assertEquals(NOT_CONFIGURED, responses.get(0).getMessage());
+		// Not known to be absent, allow-unresolved applies
+		assertEquals(Status.SUCCESS, responses.get(1).getStatus());
+	}
+}
@@ -0,0 +1,67 @@
+package com.throttling.ratelimiter.sharding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.throttling.ratelimiter.enums.LimitType;
+import com.throttling.ratelimiter.enums.RateLimitAlgorithm;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.ClientRateLimitData;
+
+public class LimitShardRouterTest {
+
+	private final LimitShardRouter router = new LimitShardRouter();
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(router, "shardedClientIds", new String[] {"hot"});
+		ReflectionTestUtils.setField(router, "shardCount", 4);
+		ReflectionTestUtils.setField(router, "probes", 10);
+		router.init();
+	}
+
+	@Test
+	public void shardsTogetherAllowTheConfiguredLimit() {
+		ClientRateLimitData limit = new ClientRateLimitData("hot", LimitType.DEFAULT, "GLOBAL", TimeUnit.SEC, 10);
+
+		long total = 0;
+		Set<String> ids = new HashSet<>();
+		for (int shard = 0; shard < 4; shard++) {
+			ClientRateLimitData shardLimit = router.forShard(Collections.singletonList(limit), shard).get(0);
+			total += shardLimit.getMaxPermits();
+			ids.add(shardLimit.getId());
+		}
+		assertEquals(10, total);
+		assertEquals(4, ids.size());
+		assertEquals(3, router.getProbes());
+	}
+
+	@Test
+	public void smallLimitsUseFewerShards() {
+		ClientRateLimitData limit = new ClientRateLimitData("hot", LimitType.API, "/a", TimeUnit.SEC, 100, RateLimitAlgorithm.GCRA);
+		limit.setBurst(2);
+
+		List<ClientRateLimitData> shards = router.withShards(limit);
+		assertEquals(3, shards.size());
+		assertEquals(50, shards.get(0).getMaxPermits());
+		assertEquals(1, shards.get(0).getBurst());
+		assertSame(shards.get(0), router.forShard(Collections.singletonList(limit), 2).get(0));
+	}
+
+	@Test
+	public void onlyListedClientsAreSharded() {
+		assertTrue(router.isSharded("hot"));
+		assertFalse(router.isSharded("cold"));
+	}
+}
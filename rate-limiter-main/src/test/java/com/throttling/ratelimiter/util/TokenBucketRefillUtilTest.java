@@ -0,0 +1,63 @@
+package com.throttling.ratelimiter.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.BucketState;
+
+public class TokenBucketRefillUtilTest {
+
+	private static final long SECOND = 1_000L;
+
+	@Test
+	public void frequentRefillsKeepTheFractionalPermits() {
+		// 3 permits per second checked every 100 ms, each check alone adds 0.3 permit
+		BucketState state = new BucketState(0, 0, 0);
+		for (long now = 100; now <= SECOND; now += 100) {
+			state = TokenBucketRefillUtil.refill(state, 3, SECOND, now);
+		}
+
+		assertEquals(3, state.getAvailablePermits());
+		assertEquals(0, state.getRefillCredit());
+	}
+
+	@Test
+	public void refillCreditCarriesOverToTheNextPermit() {
+		BucketState state = TokenBucketRefillUtil.refill(new BucketState(0, 0, 0), 3, SECOND, 500);
+		assertEquals(1, state.getAvailablePermits());
+		assertEquals(500, state.getRefillCredit());
+
+		state = TokenBucketRefillUtil.refill(state, 3, SECOND, 667);
+		assertEquals(2, state.getAvailablePermits());
+		assertEquals(1, state.getRefillCredit());
+	}
+
+	@Test
+	public void neverRefillsAboveCapacityOrBackwards() {
+		assertEquals(new BucketState(3, 2_000, 0), TokenBucketRefillUtil.refill(new BucketState(2, 1_900, 900), 3, SECOND, 2_000));
+		assertEquals(new BucketState(1, 1_000, 10), TokenBucketRefillUtil.refill(new BucketState(1, 1_000, 10), 3, SECOND, 500));
+		assertEquals(new BucketState(3, 7, 0), TokenBucketRefillUtil.refill(null, 3, SECOND, 7));
+	}
+
+	@Test
+	public void largeLimitsOnLongWindowsDoNotOverflow() {
+		long windowMillis = TimeUnitConversionUtil.toMillis(TimeUnit.MONTH);
+		long maxPermits = 3_000_000_007L;
+		BucketState state = TokenBucketRefillUtil.refill(new BucketState(0, 0, windowMillis - 1), maxPermits, windowMillis, windowMillis - 1);
+
+		// (windowMillis - 1) * (maxPermits + 1) credit, which is above Long.MAX_VALUE
+		assertEquals(3_000_000_006L, state.getAvailablePermits());
+		assertEquals(2_183_999_992L, state.getRefillCredit());
+	}
+
+	@Test
+	public void waitCoversTheMissingPermitsAndTheDebt() {
+		// 500 of the 1000 credit a permit needs at 3 permits per second, the rest is earned in 167 ms
+		assertEquals(167, TokenBucketRefillUtil.waitMillis(new BucketState(0, 0, 500), 1, 3, SECOND));
+		assertEquals(0, TokenBucketRefillUtil.waitMillis(new BucketState(2, 0, 0), 2, 3, SECOND));
+		// Two permits reserved ahead, a third one is back after a whole window
+		assertEquals(SECOND, TokenBucketRefillUtil.waitMillis(new BucketState(-2, 0, 0), 1, 3, SECOND));
+	}
+}
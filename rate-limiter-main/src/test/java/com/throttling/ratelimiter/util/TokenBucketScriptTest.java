@@ -0,0 +1,177 @@
+package com.throttling.ratelimiter.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import com.throttling.ratelimiter.config.RedisConfig;
+import com.throttling.ratelimiter.enums.TimeUnit;
+import com.throttling.ratelimiter.pojo.model.BucketState;
+
+import redis.embedded.RedisServer;
+
+//Token bucket refill of rate_limit.lua and token_lease.lua, run on an embedded Redis server, against TokenBucketRefillUtil
+@SuppressWarnings("rawtypes")
+public class TokenBucketScriptTest {
+
+	private static final long SECOND = 1_000L;
+
+	private static final String KEY = "bucket";
+
+	private static RedisServer redisServer;
+
+	private static LettuceConnectionFactory connectionFactory;
+
+	private static StringRedisTemplate redisTemplate;
+
+	private static final RedisScript<List> rateLimitScript = new RedisConfig().rateLimitScript();
+
+	private static final RedisScript<List> tokenLeaseScript = new RedisConfig().tokenLeaseScript();
+
+	@BeforeClass
+	public static void startRedis() throws IOException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		redisServer = RedisServer.builder().port(port).setting("save \"\"").build();
+		redisServer.start();
+
+		connectionFactory = new LettuceConnectionFactory("localhost", port);
+		connectionFactory.afterPropertiesSet();
+		redisTemplate = new StringRedisTemplate(connectionFactory);
+	}
+
+	@AfterClass
+	public static void stopRedis() {
+		connectionFactory.destroy();
+		redisServer.stop();
+	}
+
+	@Before
+	public void clearState() {
+		redisTemplate.delete(KEY);
+	}
+
+	@Test
+	public void largeLimitsOnLongWindowsMatch() {
+		long windowMillis = TimeUnitConversionUtil.toMillis(TimeUnit.MONTH);
+		long maxPermits = 3_000_000_007L;
+		BucketState state = new BucketState(0, 0, windowMillis - 1);
+
+		assertRateLimitMatches(state, maxPermits, windowMillis, windowMillis - 1, 1);
+		assertRateLimitMatches(state, maxPermits, windowMillis, windowMillis / 2, 1);
+		assertLeaseMatches(state, maxPermits, windowMillis, windowMillis - 1, 0, 1_000_000);
+	}
+
+	@Test
+	public void refillCreditCarriesOverBetweenCalls() {
+		// 3 permits per second, 500 ms then 167 ms more each leave part of a permit behind
+		BucketState expected = new BucketState(0, 0, 0);
+		store(expected);
+		for (long now : new long[] { 500, 667, 700, 1_000, 1_334 }) {
+			BucketState refilled = TokenBucketRefillUtil.refill(expected, 3, SECOND, now);
+			long wait = TokenBucketRefillUtil.waitMillis(refilled, 1, 3, SECOND);
+			expected = new BucketState(refilled.getAvailablePermits() - 1, refilled.getLastRequestTimeStamp(),
+					refilled.getRefillCredit());
+
+			assertEquals(Arrays.asList(0L, wait), rateLimit(3, SECOND, now, 1, SECOND));
+			assertEquals(expected, load());
+		}
+
+		assertRateLimitMatches(new BucketState(0, 0, 500), 3, SECOND, 667, 1);
+		assertLeaseMatches(new BucketState(0, 0, 500), 3, SECOND, 667, 0, 3);
+	}
+
+	@Test
+	public void reservationDebtMatches() {
+		// Whole windows refill a bucket in debt by maxPermits each, the rest is refilled with credit
+		assertRateLimitMatches(new BucketState(-5, 0, 0), 3, SECOND, 2_500, 1);
+		assertRateLimitMatches(new BucketState(-10, 0, 400), 3, SECOND, 100, 2);
+		assertRateLimitMatches(new BucketState(-2, 0, 0), 3, SECOND, 0, 1);
+		assertLeaseMatches(new BucketState(-10, 0, 400), 3, SECOND, 100, 0, 3);
+		assertLeaseMatches(new BucketState(-5, 0, 0), 3, SECOND, 2_500, 1, 3);
+	}
+
+	@Test
+	public void fullBucketsAndClocksGoingBackwardsMatch() {
+		assertRateLimitMatches(new BucketState(2, 1_900, 900), 3, SECOND, 2_000, 1);
+		assertRateLimitMatches(new BucketState(1, 1_000, 10), 3, SECOND, 500, 1);
+		assertLeaseMatches(new BucketState(2, 1_900, 900), 3, SECOND, 2_000, 2, 3);
+		assertLeaseMatches(new BucketState(1, 1_000, 10), 3, SECOND, 500, 0, 3);
+	}
+
+	@Test
+	public void deniedRequestsWaitForTheMissingPermits() {
+		BucketState state = new BucketState(0, 0, 500);
+		store(state);
+		long wait = TokenBucketRefillUtil.waitMillis(TokenBucketRefillUtil.refill(state, 3, SECOND, 0), 1, 3, SECOND);
+
+		assertEquals(Arrays.asList(1L, wait), rateLimit(3, SECOND, 0, 1, 0));
+		assertEquals(state, load());
+	}
+
+	//Takes cost permits through rate_limit.lua with a reservation long enough to always be allowed
+	private void assertRateLimitMatches(BucketState state, long maxPermits, long windowMillis, long now, long cost) {
+		store(state);
+		BucketState refilled = TokenBucketRefillUtil.refill(state, maxPermits, windowMillis, now);
+		long wait = TokenBucketRefillUtil.waitMillis(refilled, cost, maxPermits, windowMillis);
+
+		assertEquals(Arrays.asList(0L, wait), rateLimit(maxPermits, windowMillis, now, cost, 100 * windowMillis));
+		assertEquals(new BucketState(refilled.getAvailablePermits() - cost, refilled.getLastRequestTimeStamp(),
+				refilled.getRefillCredit()), load());
+	}
+
+	//Leases permits through token_lease.lua, after the node gives back its unused ones
+	private void assertLeaseMatches(BucketState state, long maxPermits, long windowMillis, long now, long returned,
+			long requested) {
+		store(state);
+		BucketState refilled = TokenBucketRefillUtil.refill(state, maxPermits, windowMillis, now);
+		BucketState available = new BucketState(refilled.getAvailablePermits() + returned,
+				refilled.getLastRequestTimeStamp(), refilled.getRefillCredit());
+		if (available.getAvailablePermits() >= maxPermits) {
+			available = new BucketState(maxPermits, available.getLastRequestTimeStamp(), 0);
+		}
+		long granted = Math.max(Math.min(available.getAvailablePermits(), requested), 0);
+		long wait = granted == 0 ? TokenBucketRefillUtil.waitMillis(available, 1, maxPermits, windowMillis) : 0;
+
+		List result = redisTemplate.execute(tokenLeaseScript, Collections.singletonList(KEY), String.valueOf(now),
+				String.valueOf(maxPermits), String.valueOf(windowMillis), String.valueOf(returned),
+				String.valueOf(requested));
+		assertEquals(Arrays.asList(granted, wait), result);
+		assertEquals(new BucketState(available.getAvailablePermits() - granted, available.getLastRequestTimeStamp(),
+				available.getRefillCredit()), load());
+	}
+
+	//One request with one token bucket limit, see the argument layout at the top of rate_limit.lua
+	private List rateLimit(long maxPermits, long windowMillis, long now, long cost, long maxWaitMillis) {
+		return redisTemplate.execute(rateLimitScript, Collections.singletonList(KEY), String.valueOf(now),
+				String.valueOf(maxPermits), String.valueOf(windowMillis), "TOKEN_BUCKET", String.valueOf(maxPermits),
+				"1", "1", String.valueOf(cost), String.valueOf(maxWaitMillis), "1");
+	}
+
+	private void store(BucketState state) {
+		redisTemplate.delete(KEY);
+		redisTemplate.opsForHash().put(KEY, "p", String.valueOf(state.getAvailablePermits()));
+		redisTemplate.opsForHash().put(KEY, "t", String.valueOf(state.getLastRequestTimeStamp()));
+		redisTemplate.opsForHash().put(KEY, "r", String.valueOf(state.getRefillCredit()));
+	}
+
+	private BucketState load() {
+		List<Object> state = redisTemplate.opsForHash().multiGet(KEY, Arrays.asList("p", "t", "r"));
+		return new BucketState(Long.parseLong((String) state.get(0)), Long.parseLong((String) state.get(1)),
+				Long.parseLong((String) state.get(2)));
+	}
+}